@@ -4,6 +4,11 @@ import desmoj.core.simulator.*;
  */
 public class Cashier extends Entity {
      private Client attendedClient;
+    /**
+     * Derivative of the time of the next event of this cashier with respect
+     * to the distribution means (see Perturbation).
+     */
+     private double[] timeDerivative;
     /**
      * Constructor of the cashier entity.
      *
@@ -24,4 +29,12 @@ public class Cashier extends Entity {
     public void setAttendedClient(Client client){
          attendedClient=client;
     }
+
+    public double[] getTimeDerivative(){
+        return timeDerivative;
+    }
+
+    public void setTimeDerivative(double[] derivative){
+         timeDerivative=derivative;
+    }
 }
\ No newline at end of file
@@ -3,6 +3,15 @@ import desmoj.core.simulator.*;
  * The Client entity encapsulates all information associated with a client.
  */
 public class Client extends Entity {
+    /**
+     * Simulation time in minutes at which the client arrived at the burger.
+     */
+    private double arrivalTime;
+    /**
+     * Derivative of the arrival time with respect to the distribution means
+     * (see Perturbation).
+     */
+    private double[] arrivalDerivative;
     /**
      * Constructor of the truck entity.
      *
@@ -14,4 +23,20 @@ public class Client extends Entity {
     public Client(Model owner, String name, boolean showInTrace) {
         super(owner, name, showInTrace);
     }
+
+    public double getArrivalTime(){
+        return arrivalTime;
+    }
+
+    public void setArrivalTime(double arrivalTime){
+        this.arrivalTime=arrivalTime;
+    }
+
+    public double[] getArrivalDerivative(){
+        return arrivalDerivative;
+    }
+
+    public void setArrivalDerivative(double[] arrivalDerivative){
+        this.arrivalDerivative=arrivalDerivative;
+    }
 }
\ No newline at end of file
@@ -44,7 +44,10 @@ public class ClientArrivalEvent extends Event<Client> {
      */
     public void eventRoutine(Client client) {
 
+        myModel.eventCount++;
+
         // client enters line
+        client.setArrivalTime(presentTime().getTimeAsDouble(TimeUnit.MINUTES));
         myModel.clientQueue1.insert(client);
         sendTraceNote("Client "+client+" arrives. ClientQueueLength: "+ myModel.clientQueue1.length());
 
@@ -59,13 +62,18 @@ public class ClientArrivalEvent extends Event<Client> {
 
             // remove the client from the queue
             myModel.clientQueue1.remove(client);
+            // the client did not have to wait
+            myModel.recordWait(0.0);
             cashier.setAttendedClient(client);
             // create an order taken event
             OrderTakenEvent orderTaken = new OrderTakenEvent (myModel,
                     "OrderTakenEvent", true);
 
             // and place it on the event list
-            orderTaken.schedule(cashier, new TimeSpan(myModel.getTakingOrderTime(), TimeUnit.MINUTES));
+            double takingTime = myModel.getTakingOrderTime();
+            cashier.setTimeDerivative(Perturbation.delayed(client.getArrivalDerivative(),
+                    Perturbation.TAKING_ORDER, takingTime, EventsMcBurger.TAKING_ORDER_MEAN));
+            orderTaken.schedule(cashier, new TimeSpan(takingTime, TimeUnit.MINUTES));
 
         }
 
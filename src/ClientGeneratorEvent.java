@@ -11,6 +11,12 @@ import java.util.concurrent.TimeUnit;
  */
 public class ClientGeneratorEvent extends ExternalEvent {
 
+    /**
+     * Derivative of the time of the next client generation with respect to
+     * the distribution means (see Perturbation).
+     */
+    private double[] timeDerivative = Perturbation.zero();
+
     /**
      * Constructs a new ClientGeneratorEvent.
      *
@@ -33,9 +39,12 @@ public class ClientGeneratorEvent extends ExternalEvent {
 
         // get a reference to the model
         EventsMcBurger model = (EventsMcBurger)getModel();
+        model.eventCount++;
 
         // create a new client
         Client client = new Client(model, "Client", true);
+        // it arrives now, so its arrival time has the derivative of this event
+        client.setArrivalDerivative(timeDerivative);
         // create a new client arrival event
         ClientArrivalEvent clientArrival = new ClientArrivalEvent(model,
                 "ClientArrivalEvent", true);
@@ -43,7 +52,10 @@ public class ClientGeneratorEvent extends ExternalEvent {
         clientArrival.schedule(client, new TimeSpan(0, TimeUnit.MINUTES));
 
         // schedule this client generator again for the next client arrival time
-        schedule(new TimeSpan(model.getClientArrivalTime(), TimeUnit.MINUTES));
+        double interArrivalTime = model.getClientArrivalTime();
+        timeDerivative = Perturbation.delayed(timeDerivative, Perturbation.CLIENT_ARRIVAL,
+                interArrivalTime, EventsMcBurger.CLIENT_ARRIVAL_MEAN);
+        schedule(new TimeSpan(interArrivalTime, TimeUnit.MINUTES));
         // from inside to outside...
         // draw a new inter-arrival time value
         // wrap it in a TimeSpan object
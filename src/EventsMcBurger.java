@@ -1,5 +1,8 @@
 import desmoj.core.simulator.*;
 import desmoj.core.dist.*;
+import desmoj.core.statistic.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -10,6 +13,11 @@ import java.util.concurrent.TimeUnit;
  * the order. After the order is cooked  they take the payment of clients. When the payment is done, client leaves the burger.
  */
 public class EventsMcBurger extends Model {
+    /**
+     * version of the model behaviour, part of the key of cached results.
+     * Increase it whenever a change alters the results of a replication.
+     */
+    protected static final int MODEL_VERSION = 3;
     /**
      * model parameter: seed of the experiment
      */
@@ -26,6 +34,22 @@ public class EventsMcBurger extends Model {
      * model parameter: the number of chefs
      */
     protected static int NUM_CHEFS = 3;
+    /**
+     * model parameter: mean time in minutes between client arrivals
+     */
+    protected static double CLIENT_ARRIVAL_MEAN = 5.0;
+    /**
+     * model parameter: mean time in minutes for a cashier to take an order
+     */
+    protected static double TAKING_ORDER_MEAN = 4.0;
+    /**
+     * model parameter: mean time in minutes for a client to pay
+     */
+    protected static double PAYING_ORDER_MEAN = 1.5;
+    /**
+     * model parameter: mean time in minutes for a chef to cook an order
+     */
+    protected static double COOKING_ORDER_MEAN = 7;
     /**
      * Random number stream used to draw an arrival time for the next client.
      * See init() method for stream parameters.
@@ -89,6 +113,47 @@ public class EventsMcBurger extends Model {
      */
     protected Queue<Chef> chefQueue;
 
+    /**
+     * All the cashiers of the burger, busy or not.
+     */
+    protected List<Cashier> cashiers = new ArrayList<Cashier>();
+
+    /**
+     * Tally of the time every client waits in clientQueue1 before a cashier
+     * starts taking his order. Clients still waiting at the end are recorded
+     * by censorAtEnd().
+     */
+    protected Tally waitTime;
+
+    /**
+     * Tally of the time every client spends in the burger, from his arrival
+     * until the payment is done. Clients still in the burger at the end are
+     * recorded by censorAtEnd().
+     */
+    protected Tally timeInSystem;
+
+    /**
+     * The number of events executed so far.
+     */
+    protected long eventCount;
+
+    /**
+     * Histogram of every wait time recorded in waitTime, to compute
+     * percentiles without keeping the waits.
+     */
+    private QuantileHistogram waits = new QuantileHistogram();
+
+    /**
+     * Sum over the clients of the derivative of their wait time with respect
+     * to the distribution means (see Perturbation).
+     */
+    protected double[] waitTimeDerivative = Perturbation.zero();
+
+    /**
+     * Sum over the clients of the derivative of their time in the burger
+     * with respect to the distribution means (see Perturbation).
+     */
+    protected double[] timeInSystemDerivative = Perturbation.zero();
 
     /**
      * EventsMcBurger constructor.
@@ -152,44 +217,44 @@ public class EventsMcBurger extends Model {
         // Parameters:
         // this                = belongs to this model
         // "TakingOrderTimeStream" = the name of the stream
-        // 4.0                      = mean time in minutes to take the order
+        // TAKING_ORDER_MEAN      = mean time in minutes to take the order
         // true                = show in report?
         // false               = show in trace?
         takingOrderTime= new ContDistExponential(this, "TakingOrderTimeStream",
-                4.0, true, false);
+                TAKING_ORDER_MEAN, true, false);
         takingOrderTime.setNonNegative(true);
 
         // initialise the clientArrivalTime
         // Parameters:
         // this                = belongs to this model
         // "ClientArrivalTimeStream" = the name of the stream
-        // 5.0                      = mean time in minutes a new client arrives
+        // CLIENT_ARRIVAL_MEAN      = mean time in minutes a new client arrives
         // true                = show in report?
         // false               = show in trace?
         clientArrivalTime= new ContDistExponential(this, "ClientArrivalTimeStream",
-                5.0, true, false);
+                CLIENT_ARRIVAL_MEAN, true, false);
         clientArrivalTime.setNonNegative(true);
 
         // initialise the payingOrderTime
         // Parameters:
         // this                = belongs to this model
         // "PayingOrderTimeStream" = the name of the stream
-        // 1.5                      = mean time in minutes for a client to pay
+        // PAYING_ORDER_MEAN      = mean time in minutes for a client to pay
         // true                = show in report?
         // false               = show in trace?
         payingOrderTime= new ContDistExponential(this, "PayingOrderTimeStream",
-                1.5, true, false);
+                PAYING_ORDER_MEAN, true, false);
         payingOrderTime.setNonNegative(true);
 
         // initialise the cookingOrderTime
         // Parameters:
         // this                = belongs to this model
         // "CookingOrderTimeStream" = the name of the stream
-        // 7                      = mean time in minutes for a chef to cook an order
+        // COOKING_ORDER_MEAN      = mean time in minutes for a chef to cook an order
         // true                = show in report?
         // false               = show in trace?
         cookingOrderTime= new ContDistExponential(this, "CookingOrderTimeStream",
-                7, true, false);
+                COOKING_ORDER_MEAN, true, false);
         cookingOrderTime.setNonNegative(true);
 
         // initalise the clientQueue1
@@ -240,6 +305,15 @@ public class EventsMcBurger extends Model {
         // true            = show in trace?
         chefQueue = new Queue<Chef>(this, "Chef Queue", true, true);
 
+        // initialise the waitTime and timeInSystem tallies
+        // Parameters:
+        // this            = belongs to this model
+        // "Wait Time"     = the name of the Tally
+        // true            = show in report?
+        // false           = show in trace?
+        waitTime = new Tally(this, "Wait Time", true, false);
+        timeInSystem = new Tally(this, "Time In System", true, false);
+
 
         // place the cashiers into the idle cashier queue 1
         // We don't do this in the doInitialSchedules() method because
@@ -251,6 +325,7 @@ public class EventsMcBurger extends Model {
             Cashier = new Cashier(this, "Cashier", true);
 
             cashierQueue1.insert(Cashier);
+            cashiers.add(Cashier);
         }
 
 
@@ -310,6 +385,152 @@ public class EventsMcBurger extends Model {
         return cookingOrderTime.sample();
     }
 
+    /**
+     * Records the time a client waited in clientQueue1 before a cashier
+     * started taking his order.
+     *
+     * @param wait the wait time in minutes
+     */
+    public void recordWait(double wait) {
+        waitTime.update(wait);
+        waits.update(wait);
+    }
+
+    /**
+     * Returns a percentile (nearest-rank method, within 0.5%, see
+     * QuantileHistogram) of the recorded wait times.
+     *
+     * @param percent the percentile, between 0 and 100
+     * @return the percentile of the wait times, or 0 if no client was served
+     */
+    public double getWaitPercentile(double percent) {
+        return waits.getQuantile(percent / 100.0);
+    }
+
+    /**
+     * Records the clients still in the burger at the end of the simulation
+     * as if they left at that time, so that the statistics cover every
+     * client that arrived and not only those served in time.
+     *
+     * A client still in clientQueue1 waited (and stayed) until the end; a
+     * client attended by a cashier stayed until the end. The end does not
+     * move with the distribution means, so the derivative of such a
+     * censored time is minus the derivative of the client's arrival.
+     *
+     * Without this, the clients whose departure is pushed past the end by a
+     * longer mean drop out of the averages, and the IPA gradients miss them.
+     */
+    public void censorAtEnd() {
+        double end = presentTime().getTimeAsDouble(TimeUnit.MINUTES);
+        double[] endDerivative = Perturbation.zero();
+        for (Client client = clientQueue1.first(); client != null; client = clientQueue1.succ(client)) {
+            recordWait(end - client.getArrivalTime());
+            Perturbation.accumulate(waitTimeDerivative, endDerivative, client.getArrivalDerivative());
+            timeInSystem.update(end - client.getArrivalTime());
+            Perturbation.accumulate(timeInSystemDerivative, endDerivative, client.getArrivalDerivative());
+        }
+        for (Cashier cashier : cashiers) {
+            Client client = cashier.getAttendedClient();
+            if (client != null) {
+                timeInSystem.update(end - client.getArrivalTime());
+                Perturbation.accumulate(timeInSystemDerivative, endDerivative, client.getArrivalDerivative());
+            }
+        }
+    }
+
+    /**
+     * Returns the IPA estimate of the derivative of the mean wait time with
+     * respect to each distribution mean, indexed as in Perturbation.
+     *
+     * @return the gradient of the mean wait time
+     */
+    public double[] getWaitTimeGradient() {
+        return gradient(waitTimeDerivative, waitTime);
+    }
+
+    /**
+     * Returns the IPA estimate of the derivative of the mean time in the
+     * burger with respect to each distribution mean, indexed as in
+     * Perturbation.
+     *
+     * @return the gradient of the mean time in the burger
+     */
+    public double[] getTimeInSystemGradient() {
+        return gradient(timeInSystemDerivative, timeInSystem);
+    }
+
+    /**
+     * Divides a sum of derivatives by the number of observations summed.
+     *
+     * The number of clients arriving before the end jumps when the mean time
+     * between arrivals changes, which pathwise derivatives cannot see. For
+     * that mean the smoothed perturbation analysis term of the jump is
+     * added: increasing the mean by one minute removes about
+     * DURATION / mean^2 clients, and removing the last client, who arrived
+     * next to the end and was barely delayed, raises the average by about
+     * average / (observations + 1).
+     */
+    private static double[] gradient(double[] sum, Tally tally) {
+        double[] mean = Perturbation.zero();
+        long observations = tally.getObservations();
+        if (observations == 0) {
+            return mean;
+        }
+        for (int i = 0; i < mean.length; i++) {
+            mean[i] = sum[i] / observations;
+        }
+        mean[Perturbation.CLIENT_ARRIVAL] += DURATION / (CLIENT_ARRIVAL_MEAN * CLIENT_ARRIVAL_MEAN)
+                * tally.getMean() / (observations + 1);
+        return mean;
+    }
+
+    /**
+     * Runs one headless replication of the model for the given configuration
+     * and returns its summary statistics.
+     *
+     * The configuration is copied into the static model parameters before the
+     * model is built, so replications must not run concurrently in one JVM.
+     * No trace, debug output or progress bar is produced.
+     *
+     * @param config the parameters and seed of the replication
+     * @return the summary statistics of the replication
+     */
+    public static ReplicationResult runReplication(McBurgerConfig config) {
+
+        config.apply();
+
+        EventsMcBurger model = new EventsMcBurger(null,
+                "Simple Event-Oriented Burger Model", false, false);
+        // false = the experiment writes no report, trace, debug or error files
+        Experiment exp = new Experiment("EventsMcBurgerReplication", false);
+        exp.setSeedGenerator(SEED);
+        model.connectToExperiment(exp);
+
+        exp.setShowProgressBar(false);
+        exp.setSilent(true);
+        exp.stop(new TimeInstant(DURATION, TimeUnit.MINUTES));
+
+        exp.start();
+
+        // clients served in time, before the ones left in the burger are censored
+        long clientsServed = model.timeInSystem.getObservations();
+        model.censorAtEnd();
+
+        ReplicationResult result = new ReplicationResult(config,
+                model.eventCount,
+                clientsServed,
+                model.waitTime.getMean(),
+                model.getWaitPercentile(95),
+                model.timeInSystem.getMean(),
+                model.clientQueue1.averageLength(),
+                model.clientQueue1.maxLength(),
+                model.getWaitTimeGradient(),
+                model.getTimeInSystemGradient());
+
+        exp.finish();
+        return result;
+    }
+
     /**
      * Runs the model.
      *
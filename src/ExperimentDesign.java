@@ -0,0 +1,285 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The ExperimentDesign class builds space-filling designs over the six
+ * factors of EventsMcBurger: the four distribution means and the number of
+ * cashiers and chefs.
+ *
+ * A design is a set of points of the unit cube, generated either as a
+ * Latin hypercube or as a Sobol sequence, which are mapped linearly onto
+ * the factor ranges. Staff counts are rounded down to whole people, every
+ * count in the range getting an equal share of the unit interval.
+ *
+ * The main method runs a design on the WorkerFarm, fits a
+ * QuadraticSurrogate of the 95th percentile of the wait and reports its
+ * error on held-out points.
+ */
+public class ExperimentDesign {
+
+    /**
+     * the number of factors
+     */
+    public static final int NUM_FACTORS = 6;
+    /**
+     * the names of the factors, in the order of the unit cube coordinates
+     */
+    public static final String[] FACTOR_NAMES = {
+            "clientArrivalMean", "takingOrderMean", "payingOrderMean", "cookingOrderMean",
+            "numCashiers", "numChefs"};
+
+    /**
+     * Sobol direction numbers of dimensions 2 to 6 (Joe and Kuo): the degree
+     * s, the coefficients a of the primitive polynomial and the initial
+     * values m_1 .. m_s. Dimension 1 is the van der Corput sequence.
+     */
+    private static final int[][] SOBOL_PARAMETERS = {
+            {1, 0, 1},
+            {2, 1, 1, 3},
+            {3, 1, 1, 3, 1},
+            {3, 2, 1, 1, 1},
+            {4, 1, 1, 1, 3, 3}};
+
+    /**
+     * the number of bits of the Sobol points
+     */
+    private static final int SOBOL_BITS = 31;
+
+    /**
+     * lower bound of every factor
+     */
+    private final double[] low;
+    /**
+     * upper bound of every factor
+     */
+    private final double[] high;
+    /**
+     * the configuration the factors are varied around (seed, duration)
+     */
+    private final McBurgerConfig base;
+
+    /**
+     * Constructor of an experiment design.
+     *
+     * @param base the configuration giving the seed and the duration
+     * @param low the lower bound of every factor, in the order of FACTOR_NAMES
+     * @param high the upper bound of every factor, in the order of FACTOR_NAMES
+     */
+    public ExperimentDesign(McBurgerConfig base, double[] low, double[] high) {
+        this.base = base;
+        this.low = low.clone();
+        this.high = high.clone();
+    }
+
+    /**
+     * Returns a Latin hypercube of n points: in every coordinate, each of the
+     * n intervals of width 1/n holds exactly one point.
+     *
+     * @param n the number of points
+     * @param random the random number generator
+     * @return the points of the unit cube
+     */
+    public static double[][] latinHypercube(int n, Random random) {
+        double[][] points = new double[n][NUM_FACTORS];
+        for (int d = 0; d < NUM_FACTORS; d++) {
+            int[] permutation = new int[n];
+            for (int i = 0; i < n; i++) {
+                permutation[i] = i;
+            }
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = permutation[i];
+                permutation[i] = permutation[j];
+                permutation[j] = swap;
+            }
+            for (int i = 0; i < n; i++) {
+                points[i][d] = (permutation[i] + random.nextDouble()) / n;
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Returns the first n points of the Sobol sequence, skipping the origin.
+     *
+     * @param n the number of points
+     * @return the points of the unit cube
+     */
+    public static double[][] sobol(int n) {
+        int[][] directions = new int[NUM_FACTORS][SOBOL_BITS + 1];
+        for (int k = 1; k <= SOBOL_BITS; k++) {
+            directions[0][k] = 1 << (SOBOL_BITS - k);
+        }
+        for (int d = 1; d < NUM_FACTORS; d++) {
+            int[] parameters = SOBOL_PARAMETERS[d - 1];
+            int s = parameters[0];
+            int a = parameters[1];
+            for (int k = 1; k <= SOBOL_BITS; k++) {
+                if (k <= s) {
+                    directions[d][k] = parameters[1 + k] << (SOBOL_BITS - k);
+                } else {
+                    int v = directions[d][k - s] ^ (directions[d][k - s] >>> s);
+                    for (int j = 1; j < s; j++) {
+                        v ^= ((a >>> (s - 1 - j)) & 1) * directions[d][k - j];
+                    }
+                    directions[d][k] = v;
+                }
+            }
+        }
+
+        double[][] points = new double[n][NUM_FACTORS];
+        int[] x = new int[NUM_FACTORS];
+        for (int i = 0; i < n; i++) {
+            // Gray code order: flip the direction of the lowest zero bit of i
+            int c = Integer.numberOfTrailingZeros(~i) + 1;
+            for (int d = 0; d < NUM_FACTORS; d++) {
+                x[d] ^= directions[d][c];
+                points[i][d] = x[d] / (double) (1L << SOBOL_BITS);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Maps a point of the unit cube onto a model configuration.
+     *
+     * @param u the point of the unit cube
+     * @param seed the seed of the configuration
+     * @return the configuration
+     */
+    public McBurgerConfig toConfig(double[] u, long seed) {
+        double[] f = new double[NUM_FACTORS];
+        for (int d = 0; d < 4; d++) {
+            f[d] = low[d] + u[d] * (high[d] - low[d]);
+        }
+        for (int d = 4; d < NUM_FACTORS; d++) {
+            int count = (int) Math.floor(low[d] + u[d] * (high[d] - low[d] + 1));
+            f[d] = Math.min(count, (int) high[d]);
+        }
+        return new McBurgerConfig(seed, base.getDuration(), (int) f[4], (int) f[5],
+                f[0], f[1], f[2], f[3]);
+    }
+
+    /**
+     * Maps a model configuration back onto the unit cube, the staff counts
+     * onto the middle of their share of the unit interval.
+     *
+     * @param config the configuration
+     * @return the point of the unit cube
+     */
+    public double[] toUnit(McBurgerConfig config) {
+        double[] f = {config.getClientArrivalMean(), config.getTakingOrderMean(),
+                config.getPayingOrderMean(), config.getCookingOrderMean(),
+                config.getNumCashiers(), config.getNumChefs()};
+        double[] u = new double[NUM_FACTORS];
+        for (int d = 0; d < 4; d++) {
+            u[d] = (f[d] - low[d]) / (high[d] - low[d]);
+        }
+        for (int d = 4; d < NUM_FACTORS; d++) {
+            u[d] = (f[d] - low[d] + 0.5) / (high[d] - low[d] + 1);
+        }
+        return u;
+    }
+
+    /**
+     * Runs the design points and returns the mean 95th percentile of the
+     * wait at every point, over the given number of replications.
+     *
+     * @param farm the farm running the replications
+     * @param points the points of the unit cube
+     * @param replications the number of seeds per point
+     * @return the response at every point
+     * @throws Exception if the replications cannot be run
+     */
+    public double[] run(WorkerFarm farm, double[][] points, int replications) throws Exception {
+        List<McBurgerConfig> configs = new ArrayList<McBurgerConfig>();
+        for (double[] point : points) {
+            for (int r = 0; r < replications; r++) {
+                configs.add(toConfig(point, base.getSeed() + r));
+            }
+        }
+        Map<McBurgerConfig, ReplicationResult> results = new HashMap<McBurgerConfig, ReplicationResult>();
+        for (ReplicationResult result : farm.run(configs)) {
+            results.put(result.getConfig(), result);
+        }
+        if (!farm.getFailedUnits().isEmpty()) {
+            throw new IllegalStateException(farm.getFailedUnits().size() + " replications failed");
+        }
+
+        double[] responses = new double[points.length];
+        for (int i = 0; i < configs.size(); i++) {
+            responses[i / replications] += results.get(configs.get(i)).getP95Wait() / replications;
+        }
+        return responses;
+    }
+
+    /**
+     * Fits a surrogate of the 95th percentile of the wait over the default
+     * factor ranges and reports its error on held-out points.
+     *
+     * @param args the design ("lhs" or "sobol"), the number of training
+     *             points, the number of held-out points, the number of
+     *             replications per point and the number of workers
+     *             (default: sobol, 128, 32, 3 and available processors)
+     * @throws Exception if the replications cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+
+        String type = args.length > 0 ? args[0] : "sobol";
+        int training = args.length > 1 ? Integer.parseInt(args[1]) : 128;
+        int heldOut = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        int replications = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        int workers = args.length > 4 ? Integer.parseInt(args[4])
+                : Runtime.getRuntime().availableProcessors();
+
+        McBurgerConfig base = McBurgerConfig.current();
+        ExperimentDesign design = new ExperimentDesign(base,
+                new double[] {3.0, 2.0, 1.0, 4.0, 1, 1},
+                new double[] {7.0, 6.0, 2.0, 10.0, 6, 6});
+
+        Random random = new Random(base.getSeed());
+        double[][] trainingPoints = "lhs".equals(type)
+                ? latinHypercube(training, random) : sobol(training);
+        // held-out points always come from an independent Latin hypercube
+        double[][] heldOutPoints = latinHypercube(heldOut, random);
+
+        ReplicationCache cache = new ReplicationCache(new File("replication-cache"), 10000);
+        WorkerFarm farm = new WorkerFarm(workers, 2, cache);
+        double[] trainingResponses = design.run(farm, trainingPoints, replications);
+        double[] heldOutResponses = design.run(farm, heldOutPoints, replications);
+        cache.close();
+
+        // fit on the points as the model sees them, i.e. with whole staff counts
+        QuadraticSurrogate surrogate = QuadraticSurrogate.fit(
+                snap(design, trainingPoints), trainingResponses);
+        double[] errors = surrogate.errors(snap(design, heldOutPoints), heldOutResponses);
+
+        System.out.println("p95 wait surrogate fitted on " + training + " " + type + " points, "
+                + replications + " replications each");
+        System.out.println("held-out (" + heldOut + " points): RMSE " + errors[0]
+                + " minutes, max error " + errors[1] + " minutes, R^2 " + errors[2]);
+
+        double[] query = design.toUnit(base);
+        long start = System.nanoTime();
+        double prediction = surrogate.predict(query);
+        long elapsed = System.nanoTime() - start;
+        System.out.println("predicted p95 wait for " + base + ": " + prediction
+                + " minutes (" + elapsed / 1000.0 + " microseconds)");
+    }
+
+    /**
+     * Maps design points onto configurations and back, so the staff
+     * coordinates are those of the counts actually simulated.
+     */
+    private static double[][] snap(ExperimentDesign design, double[][] points) {
+        double[][] snapped = new double[points.length][];
+        for (int i = 0; i < points.length; i++) {
+            snapped[i] = design.toUnit(design.toConfig(points[i], 0));
+        }
+        return snapped;
+    }
+}
@@ -0,0 +1,219 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The McBurgerConfig class holds the complete set of parameters of one
+ * EventsMcBurger replication: the seed, the duration, the staffing and the
+ * means of the four exponential distributions.
+ *
+ * Every replication is deterministic given its configuration, so the
+ * configuration also serves as the key under which results are cached.
+ */
+public class McBurgerConfig {
+
+    /**
+     * seed of the experiment
+     */
+    private final long seed;
+    /**
+     * duration of the simulation in minutes
+     */
+    private final long duration;
+    /**
+     * the number of cashiers
+     */
+    private final int numCashiers;
+    /**
+     * the number of chefs
+     */
+    private final int numChefs;
+    /**
+     * mean time in minutes between client arrivals
+     */
+    private final double clientArrivalMean;
+    /**
+     * mean time in minutes for a cashier to take an order
+     */
+    private final double takingOrderMean;
+    /**
+     * mean time in minutes for a client to pay
+     */
+    private final double payingOrderMean;
+    /**
+     * mean time in minutes for a chef to cook an order
+     */
+    private final double cookingOrderMean;
+
+    /**
+     * Constructor of a model configuration.
+     *
+     * @param seed seed of the experiment
+     * @param duration duration of the simulation in minutes
+     * @param numCashiers the number of cashiers
+     * @param numChefs the number of chefs
+     * @param clientArrivalMean mean time in minutes between client arrivals
+     * @param takingOrderMean mean time in minutes to take an order
+     * @param payingOrderMean mean time in minutes to pay an order
+     * @param cookingOrderMean mean time in minutes to cook an order
+     */
+    public McBurgerConfig(long seed, long duration, int numCashiers, int numChefs,
+                          double clientArrivalMean, double takingOrderMean,
+                          double payingOrderMean, double cookingOrderMean) {
+        this.seed = seed;
+        this.duration = duration;
+        this.numCashiers = numCashiers;
+        this.numChefs = numChefs;
+        this.clientArrivalMean = clientArrivalMean;
+        this.takingOrderMean = takingOrderMean;
+        this.payingOrderMean = payingOrderMean;
+        this.cookingOrderMean = cookingOrderMean;
+    }
+
+    /**
+     * Returns the configuration currently held by the static model
+     * parameters of EventsMcBurger.
+     *
+     * @return the current model configuration
+     */
+    public static McBurgerConfig current() {
+        return new McBurgerConfig(EventsMcBurger.SEED, EventsMcBurger.DURATION,
+                EventsMcBurger.NUM_CASHIERS, EventsMcBurger.NUM_CHEFS,
+                EventsMcBurger.CLIENT_ARRIVAL_MEAN, EventsMcBurger.TAKING_ORDER_MEAN,
+                EventsMcBurger.PAYING_ORDER_MEAN, EventsMcBurger.COOKING_ORDER_MEAN);
+    }
+
+    /**
+     * Copies this configuration into the static model parameters of
+     * EventsMcBurger, so the next model built picks it up.
+     */
+    public void apply() {
+        EventsMcBurger.SEED = seed;
+        EventsMcBurger.DURATION = duration;
+        EventsMcBurger.NUM_CASHIERS = numCashiers;
+        EventsMcBurger.NUM_CHEFS = numChefs;
+        EventsMcBurger.CLIENT_ARRIVAL_MEAN = clientArrivalMean;
+        EventsMcBurger.TAKING_ORDER_MEAN = takingOrderMean;
+        EventsMcBurger.PAYING_ORDER_MEAN = payingOrderMean;
+        EventsMcBurger.COOKING_ORDER_MEAN = cookingOrderMean;
+    }
+
+    /**
+     * Returns a copy of this configuration with another seed.
+     *
+     * @param seed the seed of the new configuration
+     * @return the new configuration
+     */
+    public McBurgerConfig withSeed(long seed) {
+        return new McBurgerConfig(seed, duration, numCashiers, numChefs,
+                clientArrivalMean, takingOrderMean, payingOrderMean, cookingOrderMean);
+    }
+
+    /**
+     * Returns the SHA-256 hash of the canonical form of this configuration
+     * and of EventsMcBurger.MODEL_VERSION as a hexadecimal string, so that
+     * results of an older model are never served for the current one.
+     *
+     * @return the cache key of this configuration
+     */
+    public String key() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String versioned = "model=" + EventsMcBurger.MODEL_VERSION + ";" + toString();
+            byte[] hash = digest.digest(versioned.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes this configuration in binary form.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(seed);
+        out.writeLong(duration);
+        out.writeInt(numCashiers);
+        out.writeInt(numChefs);
+        out.writeDouble(clientArrivalMean);
+        out.writeDouble(takingOrderMean);
+        out.writeDouble(payingOrderMean);
+        out.writeDouble(cookingOrderMean);
+    }
+
+    /**
+     * Reads a configuration written by writeTo().
+     *
+     * @param in the stream to read from
+     * @return the configuration read
+     * @throws IOException if the stream cannot be read
+     */
+    public static McBurgerConfig readFrom(DataInput in) throws IOException {
+        return new McBurgerConfig(in.readLong(), in.readLong(), in.readInt(), in.readInt(),
+                in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public int getNumCashiers() {
+        return numCashiers;
+    }
+
+    public int getNumChefs() {
+        return numChefs;
+    }
+
+    public double getClientArrivalMean() {
+        return clientArrivalMean;
+    }
+
+    public double getTakingOrderMean() {
+        return takingOrderMean;
+    }
+
+    public double getPayingOrderMean() {
+        return payingOrderMean;
+    }
+
+    public double getCookingOrderMean() {
+        return cookingOrderMean;
+    }
+
+    /**
+     * Returns the canonical form of this configuration. Doubles are printed
+     * with Double.toString(), which round-trips exactly.
+     *
+     * @return the canonical form of this configuration
+     */
+    public String toString() {
+        return "seed=" + seed + ";duration=" + duration
+                + ";cashiers=" + numCashiers + ";chefs=" + numChefs
+                + ";arrival=" + clientArrivalMean + ";taking=" + takingOrderMean
+                + ";paying=" + payingOrderMean + ";cooking=" + cookingOrderMean;
+    }
+
+    public boolean equals(Object o) {
+        return o instanceof McBurgerConfig && toString().equals(o.toString());
+    }
+
+    public int hashCode() {
+        return toString().hashCode();
+    }
+}
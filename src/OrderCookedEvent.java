@@ -39,6 +39,11 @@ public class OrderCookedEvent extends EventOf2Entities<Chef, Cashier> {
      */
     public void eventRoutine(Chef chef, Cashier cashier) {
 
+        myModel.eventCount++;
+
+        // derivative of the present time (see Perturbation)
+        double[] now = cashier.getTimeDerivative();
+
         // pass the departure the end of the preparation to the trace
         sendTraceNote("Order of" + cashier.getAttendedClient() + "taken by"+cashier+ "already cooked by"+ chef);
 
@@ -53,7 +58,10 @@ public class OrderCookedEvent extends EventOf2Entities<Chef, Cashier> {
                 "PaymentEndEvent", true);
 
         // and place it on the event list
-        paymentEnd.schedule(cashier, new TimeSpan(myModel.getPayingOrderTime(), TimeUnit.MINUTES));
+        double payingTime = myModel.getPayingOrderTime();
+        cashier.setTimeDerivative(Perturbation.delayed(now,
+                Perturbation.PAYING_ORDER, payingTime, EventsMcBurger.PAYING_ORDER_MEAN));
+        paymentEnd.schedule(cashier, new TimeSpan(payingTime, TimeUnit.MINUTES));
 
         // check if there are cashiers waiting
         if (!myModel.cashierQueue2.isEmpty()) {
@@ -73,7 +81,10 @@ public class OrderCookedEvent extends EventOf2Entities<Chef, Cashier> {
                     "OrderCookedEvent", true);
 
             // and place it on the event list
-            orderCooked.schedule(chef, nextCashier, new TimeSpan(myModel.getCookingOrderTime(), TimeUnit.MINUTES));
+            double cookingTime = myModel.getCookingOrderTime();
+            nextCashier.setTimeDerivative(Perturbation.delayed(now,
+                    Perturbation.COOKING_ORDER, cookingTime, EventsMcBurger.COOKING_ORDER_MEAN));
+            orderCooked.schedule(chef, nextCashier, new TimeSpan(cookingTime, TimeUnit.MINUTES));
 
         } else {
             // NO, there are no cashiers waiting
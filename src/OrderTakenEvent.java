@@ -39,6 +39,8 @@ public class OrderTakenEvent extends Event<Cashier> {
      */
     public void eventRoutine(Cashier cashier) {
 
+        myModel.eventCount++;
+
         // pass the end of taking the order to the trace
         sendTraceNote("Order of" + cashier.getAttendedClient() + "already taken by"+cashier);
 
@@ -63,7 +65,10 @@ public class OrderTakenEvent extends Event<Cashier> {
                     "OrderCookedEvent", true);
 
             // and place it on the event list
-            orderCooked.schedule(chef, cashier, new TimeSpan(myModel.getCookingOrderTime(), TimeUnit.MINUTES));
+            double cookingTime = myModel.getCookingOrderTime();
+            cashier.setTimeDerivative(Perturbation.delayed(cashier.getTimeDerivative(),
+                    Perturbation.COOKING_ORDER, cookingTime, EventsMcBurger.COOKING_ORDER_MEAN));
+            orderCooked.schedule(chef, cashier, new TimeSpan(cookingTime, TimeUnit.MINUTES));
 
         } else {
             // NO, there are no chefs waiting
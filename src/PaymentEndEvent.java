@@ -38,9 +38,19 @@ public class PaymentEndEvent extends Event<Cashier> {
      */
     public void eventRoutine(Cashier cashier) {
 
+        myModel.eventCount++;
+
         // pass the departure the end of the preparation to the trace
         sendTraceNote("Payment ended:" + cashier.getAttendedClient() + "leaves the burger");
 
+        // record how long the leaving client stayed in the burger
+        double now = presentTime().getTimeAsDouble(TimeUnit.MINUTES);
+        double[] nowDerivative = cashier.getTimeDerivative();
+        myModel.timeInSystem.update(now - cashier.getAttendedClient().getArrivalTime());
+        Perturbation.accumulate(myModel.timeInSystemDerivative, nowDerivative,
+                cashier.getAttendedClient().getArrivalDerivative());
+        cashier.setAttendedClient(null);
+
         // the cashier waits for more clients
         myModel.cashierQueue1.insert(cashier);
 
@@ -54,6 +64,9 @@ public class PaymentEndEvent extends Event<Cashier> {
             Client client = myModel.clientQueue1.first();
             // remove it from the queue
             myModel.clientQueue1.remove(client);
+            myModel.recordWait(now - client.getArrivalTime());
+            Perturbation.accumulate(myModel.waitTimeDerivative, nowDerivative,
+                    client.getArrivalDerivative());
             // remove cashier from the queue
             myModel.cashierQueue1.remove(cashier);
 
@@ -63,7 +76,10 @@ public class PaymentEndEvent extends Event<Cashier> {
                     "OrderTakenEvent", true);
 
             // and place it on the event list
-            orderTaken.schedule( cashier, new TimeSpan(myModel.getTakingOrderTime(), TimeUnit.MINUTES));
+            double takingTime = myModel.getTakingOrderTime();
+            cashier.setTimeDerivative(Perturbation.delayed(nowDerivative,
+                    Perturbation.TAKING_ORDER, takingTime, EventsMcBurger.TAKING_ORDER_MEAN));
+            orderTaken.schedule( cashier, new TimeSpan(takingTime, TimeUnit.MINUTES));
 
         }
     }
@@ -0,0 +1,84 @@
+/**
+ * The Perturbation class gathers the helpers of the infinitesimal
+ * perturbation analysis (IPA) of the EventsMcBurger model.
+ *
+ * Every exponential sample is drawn as X = mean * E, where E does not depend
+ * on the mean, so dX/dmean = X / mean. The time at which an event occurs is
+ * the time of the event that scheduled it plus the sampled delay, so its
+ * derivative is the derivative of the scheduling event plus dX/dmean of the
+ * delay. An entity waiting in a queue is picked up by a later event, so it
+ * takes over the derivative of that event.
+ *
+ * Derivatives are kept as vectors with one component per distribution mean,
+ * indexed by the constants below.
+ */
+public class Perturbation {
+
+    /**
+     * index of the mean time between client arrivals
+     */
+    public static final int CLIENT_ARRIVAL = 0;
+    /**
+     * index of the mean time to take an order
+     */
+    public static final int TAKING_ORDER = 1;
+    /**
+     * index of the mean time to pay an order
+     */
+    public static final int PAYING_ORDER = 2;
+    /**
+     * index of the mean time to cook an order
+     */
+    public static final int COOKING_ORDER = 3;
+    /**
+     * the number of distribution means
+     */
+    public static final int NUM_PARAMETERS = 4;
+    /**
+     * the names of the distribution means, in index order
+     */
+    public static final String[] PARAMETER_NAMES = {
+            "clientArrivalMean", "takingOrderMean", "payingOrderMean", "cookingOrderMean"};
+
+    private Perturbation() {
+    }
+
+    /**
+     * Returns a zero derivative, the derivative of the start of the simulation.
+     *
+     * @return a new zero vector
+     */
+    public static double[] zero() {
+        return new double[NUM_PARAMETERS];
+    }
+
+    /**
+     * Returns the derivative of an event occurring an exponential delay after
+     * the event whose derivative is given.
+     *
+     * @param now the derivative of the scheduling event's time
+     * @param parameter the index of the mean of the delay's distribution
+     * @param delay the sampled delay
+     * @param mean the mean of the delay's distribution
+     * @return a new vector holding the derivative of the scheduled event's time
+     */
+    public static double[] delayed(double[] now, int parameter, double delay, double mean) {
+        double[] derivative = now.clone();
+        derivative[parameter] += delay / mean;
+        return derivative;
+    }
+
+    /**
+     * Adds the derivative of an interval, i.e. the derivative of its end
+     * minus the derivative of its start, to a sum.
+     *
+     * @param sum the vector the interval's derivative is added to
+     * @param end the derivative of the end of the interval
+     * @param start the derivative of the start of the interval
+     */
+    public static void accumulate(double[] sum, double[] end, double[] start) {
+        for (int i = 0; i < NUM_PARAMETERS; i++) {
+            sum[i] += end[i] - start[i];
+        }
+    }
+}
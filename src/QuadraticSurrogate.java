@@ -0,0 +1,174 @@
+/**
+ * The QuadraticSurrogate is a metamodel of a simulation response: a full
+ * second-order polynomial (constant, linear, squared and pairwise
+ * interaction terms) fitted by least squares.
+ *
+ * Inputs are points of the unit cube (see ExperimentDesign.toUnit()), so
+ * all terms have comparable scales. Once fitted, a prediction costs a few
+ * dozen multiplications instead of a simulation run.
+ */
+public class QuadraticSurrogate {
+
+    /**
+     * ridge added to the diagonal of the normal equations, so that a
+     * nearly singular design still yields a solution
+     */
+    private static final double RIDGE = 1e-8;
+
+    /**
+     * the number of inputs
+     */
+    private final int dimension;
+    /**
+     * the fitted coefficients, in the order of terms()
+     */
+    private final double[] coefficients;
+
+    private QuadraticSurrogate(int dimension, double[] coefficients) {
+        this.dimension = dimension;
+        this.coefficients = coefficients;
+    }
+
+    /**
+     * Returns the number of coefficients of a quadratic in the given
+     * number of inputs.
+     *
+     * @param dimension the number of inputs
+     * @return the number of terms
+     */
+    public static int numTerms(int dimension) {
+        return 1 + 2 * dimension + dimension * (dimension - 1) / 2;
+    }
+
+    /**
+     * Evaluates the terms of the polynomial at a point.
+     */
+    private static double[] terms(double[] x) {
+        int d = x.length;
+        double[] terms = new double[numTerms(d)];
+        int k = 0;
+        terms[k++] = 1.0;
+        for (int i = 0; i < d; i++) {
+            terms[k++] = x[i];
+        }
+        for (int i = 0; i < d; i++) {
+            for (int j = i; j < d; j++) {
+                terms[k++] = x[i] * x[j];
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Fits a surrogate to observed responses.
+     *
+     * @param points the observed points of the unit cube
+     * @param responses the response observed at every point
+     * @return the fitted surrogate
+     * @throws IllegalArgumentException if there are fewer points than terms
+     */
+    public static QuadraticSurrogate fit(double[][] points, double[] responses) {
+        int dimension = points[0].length;
+        int p = numTerms(dimension);
+        if (points.length < p) {
+            throw new IllegalArgumentException("A quadratic in " + dimension + " inputs needs at least "
+                    + p + " points, got " + points.length);
+        }
+
+        // normal equations (X'X + ridge I) b = X'y
+        double[][] a = new double[p][p + 1];
+        for (int n = 0; n < points.length; n++) {
+            double[] t = terms(points[n]);
+            for (int i = 0; i < p; i++) {
+                for (int j = 0; j < p; j++) {
+                    a[i][j] += t[i] * t[j];
+                }
+                a[i][p] += t[i] * responses[n];
+            }
+        }
+        for (int i = 0; i < p; i++) {
+            a[i][i] += RIDGE;
+        }
+        return new QuadraticSurrogate(dimension, solve(a));
+    }
+
+    /**
+     * Solves a linear system given as an augmented matrix by Gaussian
+     * elimination with partial pivoting. The matrix is overwritten.
+     */
+    private static double[] solve(double[][] a) {
+        int n = a.length;
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < n; row++) {
+                if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+                    pivot = row;
+                }
+            }
+            double[] swap = a[col];
+            a[col] = a[pivot];
+            a[pivot] = swap;
+            for (int row = col + 1; row < n; row++) {
+                double factor = a[row][col] / a[col][col];
+                for (int k = col; k <= n; k++) {
+                    a[row][k] -= factor * a[col][k];
+                }
+            }
+        }
+        double[] x = new double[n];
+        for (int row = n - 1; row >= 0; row--) {
+            double sum = a[row][n];
+            for (int k = row + 1; k < n; k++) {
+                sum -= a[row][k] * x[k];
+            }
+            x[row] = sum / a[row][row];
+        }
+        return x;
+    }
+
+    /**
+     * Predicts the response at a point.
+     *
+     * @param x a point of the unit cube
+     * @return the predicted response
+     */
+    public double predict(double[] x) {
+        if (x.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " inputs, got " + x.length);
+        }
+        double[] t = terms(x);
+        double y = 0;
+        for (int i = 0; i < t.length; i++) {
+            y += coefficients[i] * t[i];
+        }
+        return y;
+    }
+
+    /**
+     * Compares the predictions of this surrogate with observed responses,
+     * typically at points that were not used for fitting.
+     *
+     * @param points the points of the unit cube
+     * @param responses the response observed at every point
+     * @return the root mean squared error, the maximum absolute error and
+     *         the coefficient of determination R^2, in this order
+     */
+    public double[] errors(double[][] points, double[] responses) {
+        double mean = 0;
+        for (double response : responses) {
+            mean += response;
+        }
+        mean /= responses.length;
+
+        double squares = 0;
+        double total = 0;
+        double max = 0;
+        for (int n = 0; n < points.length; n++) {
+            double error = predict(points[n]) - responses[n];
+            squares += error * error;
+            total += (responses[n] - mean) * (responses[n] - mean);
+            max = Math.max(max, Math.abs(error));
+        }
+        return new double[] {Math.sqrt(squares / points.length), max, 1.0 - squares / total};
+    }
+}
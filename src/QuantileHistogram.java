@@ -0,0 +1,88 @@
+/**
+ * The QuantileHistogram class counts observations in logarithmic bins to
+ * answer quantile queries in constant memory, whatever the number of
+ * observations.
+ *
+ * Values under SMALLEST share the first bin. Above it, every bin is GROWTH
+ * times as wide as the previous one, and a quantile is reported as the
+ * geometric middle of its bin, so it is within 0.5% of the exact
+ * nearest-rank quantile (within SMALLEST for values under SMALLEST). The
+ * result never leaves the range of the observations.
+ */
+public class QuantileHistogram {
+
+    /**
+     * upper bound of the first bin
+     */
+    private static final double SMALLEST = 1e-3;
+    /**
+     * ratio of the bounds of a bin
+     */
+    private static final double GROWTH = 1.01;
+    /**
+     * the number of bins, enough to reach 10^7 above SMALLEST; larger
+     * values go into the last bin
+     */
+    private static final int BINS = 2 + (int) Math.ceil(Math.log(1e10) / Math.log(GROWTH));
+
+    /**
+     * the number of observations in every bin
+     */
+    private final long[] counts = new long[BINS];
+    /**
+     * the number of observations
+     */
+    private long count;
+    /**
+     * the smallest observation
+     */
+    private double min = Double.POSITIVE_INFINITY;
+    /**
+     * the largest observation
+     */
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Adds an observation.
+     *
+     * @param x the observation, not negative
+     */
+    public void update(double x) {
+        int bin = x < SMALLEST ? 0
+                : Math.min(1 + (int) (Math.log(x / SMALLEST) / Math.log(GROWTH)), BINS - 1);
+        counts[bin]++;
+        count++;
+        min = Math.min(min, x);
+        max = Math.max(max, x);
+    }
+
+    /**
+     * Returns a quantile (nearest-rank method) of the observations.
+     *
+     * @param p the quantile, between 0 and 1
+     * @return the quantile of the observations, or 0 if there were none
+     */
+    public double getQuantile(double p) {
+        if (count == 0) {
+            return 0.0;
+        }
+        long rank = Math.max((long) Math.ceil(p * count), 1);
+        int bin = 0;
+        long seen = counts[0];
+        while (seen < rank) {
+            seen += counts[++bin];
+        }
+        double middle = bin == 0 ? SMALLEST / 2
+                : SMALLEST * Math.pow(GROWTH, bin - 0.5);
+        return Math.max(min, Math.min(max, middle));
+    }
+
+    /**
+     * Returns the number of observations.
+     *
+     * @return the number of observations
+     */
+    public long getObservations() {
+        return count;
+    }
+}
@@ -0,0 +1,281 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The QueueSplitting class estimates the probability that clientQueue1
+ * grows beyond a given length during one simulated day, by fixed-effort
+ * importance splitting.
+ *
+ * The queue lengths between zero and the threshold are cut by intermediate
+ * levels. Stage k starts a fixed number of trajectories from the states in
+ * which earlier trajectories first reached level k-1 and counts how many of
+ * them reach level k before the end of the day. The probability of the rare
+ * event is the product of these conditional probabilities, and every stage
+ * only has to estimate a probability that is not rare.
+ *
+ * Splitting needs to copy the model state at the moment a level is
+ * reached, which a running DESMO-J experiment does not allow. Since all
+ * four distributions of EventsMcBurger are exponential, the model is a
+ * continuous-time Markov chain whose state is the number of clients
+ * waiting, the number of cashiers in each phase and the clock, so this
+ * class simulates that chain directly. Its rules are those of the event
+ * classes: a cashier takes an order, waits for a free chef, waits for the
+ * order to be cooked and then takes the payment.
+ *
+ * The procedure is repeated independently to get a confidence interval.
+ */
+public class QueueSplitting {
+
+    /**
+     * the configuration of the model (the seed seeds the splitting)
+     */
+    private final McBurgerConfig config;
+    /**
+     * the queue lengths to reach, in increasing order; the last one is the
+     * rare event
+     */
+    private final int[] levels;
+    /**
+     * the number of trajectories started in every stage
+     */
+    private final int effort;
+    /**
+     * random number generator of the trajectories
+     */
+    private final Random random;
+    /**
+     * the number of events simulated so far
+     */
+    private long events;
+
+    /**
+     * A state of the model: the clock and the number of clients or cashiers
+     * in every place.
+     */
+    private static class State implements Cloneable {
+        /** simulation time in minutes */
+        private double time;
+        /** clients in clientQueue1 */
+        private int waiting;
+        /** cashiers waiting for clients (cashierQueue1) */
+        private int idleCashiers;
+        /** cashiers taking an order */
+        private int taking;
+        /** cashiers waiting for a free chef (cashierQueue2) */
+        private int waitingChef;
+        /** cashiers whose order is being cooked (cashierQueue3) */
+        private int cooking;
+        /** cashiers taking a payment */
+        private int paying;
+
+        private State copy() {
+            try {
+                return (State) clone();
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Constructor of the splitting estimator.
+     *
+     * @param config the configuration of the model
+     * @param levels the queue lengths to reach, in increasing order; the
+     *               last one is the rare event
+     * @param effort the number of trajectories started in every stage
+     */
+    public QueueSplitting(McBurgerConfig config, int[] levels, int effort) {
+        this.config = config;
+        this.levels = levels.clone();
+        this.effort = effort;
+        this.random = new Random(config.getSeed());
+    }
+
+    /**
+     * Returns evenly spaced levels for the event "clientQueue1 holds more
+     * than threshold clients".
+     *
+     * @param threshold the queue length to exceed
+     * @param step the distance between two levels
+     * @return the levels, ending with threshold + 1
+     */
+    public static int[] evenLevels(int threshold, int step) {
+        List<Integer> levels = new ArrayList<Integer>();
+        for (int level = step; level <= threshold; level += step) {
+            levels.add(level);
+        }
+        levels.add(threshold + 1);
+        int[] result = new int[levels.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = levels.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of events simulated so far.
+     *
+     * @return the number of events simulated
+     */
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * Runs the splitting procedure once.
+     *
+     * @return an unbiased estimate of the probability of reaching the last level
+     */
+    public double estimate() {
+        // the first client arrives at time 0, as with ClientGeneratorEvent
+        State initial = new State();
+        initial.idleCashiers = config.getNumCashiers();
+        arrival(initial);
+
+        List<State> entrance = new ArrayList<State>();
+        entrance.add(initial);
+        double probability = 1.0;
+        for (int level : levels) {
+            List<State> reached = new ArrayList<State>();
+            for (int i = 0; i < effort; i++) {
+                State state = entrance.get(random.nextInt(entrance.size())).copy();
+                if (runUntil(state, level)) {
+                    reached.add(state);
+                }
+            }
+            probability *= (double) reached.size() / effort;
+            if (reached.isEmpty()) {
+                return 0.0;
+            }
+            entrance = reached;
+        }
+        return probability;
+    }
+
+    /**
+     * Simulates a trajectory until the queue reaches the level or the day ends.
+     *
+     * @param state the state to start from, updated in place
+     * @param level the queue length to reach
+     * @return true if the level was reached before the end of the day
+     */
+    private boolean runUntil(State state, int level) {
+        double arrivalRate = 1.0 / config.getClientArrivalMean();
+        double takingRate = 1.0 / config.getTakingOrderMean();
+        double cookingRate = 1.0 / config.getCookingOrderMean();
+        double payingRate = 1.0 / config.getPayingOrderMean();
+
+        while (state.waiting < level) {
+            double taking = state.taking * takingRate;
+            double cooking = state.cooking * cookingRate;
+            double paying = state.paying * payingRate;
+            double total = arrivalRate + taking + cooking + paying;
+
+            state.time += -Math.log(1.0 - random.nextDouble()) / total;
+            if (state.time > config.getDuration()) {
+                return false;
+            }
+            events++;
+
+            double u = random.nextDouble() * total;
+            if (u < arrivalRate) {
+                arrival(state);
+            } else if (u < arrivalRate + taking) {
+                orderTaken(state);
+            } else if (u < arrivalRate + taking + cooking) {
+                orderCooked(state);
+            } else {
+                paymentEnd(state);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A client arrives (see ClientArrivalEvent).
+     */
+    private void arrival(State state) {
+        if (state.idleCashiers > 0) {
+            state.idleCashiers--;
+            state.taking++;
+        } else {
+            state.waiting++;
+        }
+    }
+
+    /**
+     * A cashier finishes taking an order (see OrderTakenEvent).
+     */
+    private void orderTaken(State state) {
+        state.taking--;
+        if (state.cooking < config.getNumChefs()) {
+            state.cooking++;
+        } else {
+            state.waitingChef++;
+        }
+    }
+
+    /**
+     * A chef finishes cooking an order (see OrderCookedEvent).
+     */
+    private void orderCooked(State state) {
+        state.cooking--;
+        state.paying++;
+        if (state.waitingChef > 0) {
+            state.waitingChef--;
+            state.cooking++;
+        }
+    }
+
+    /**
+     * A client finishes paying (see PaymentEndEvent).
+     */
+    private void paymentEnd(State state) {
+        state.paying--;
+        if (state.waiting > 0) {
+            state.waiting--;
+            state.taking++;
+        } else {
+            state.idleCashiers++;
+        }
+    }
+
+    /**
+     * Estimates the probability that clientQueue1 holds more than a given
+     * number of clients during a day of the default configuration.
+     *
+     * @param args the threshold, the distance between levels, the effort per
+     *             stage and the number of independent repetitions
+     *             (default: 40, 5, 1000 and 20)
+     */
+    public static void main(String[] args) {
+
+        int threshold = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        int step = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int effort = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int repetitions = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        McBurgerConfig config = McBurgerConfig.current();
+        QueueSplitting splitting = new QueueSplitting(config, evenLevels(threshold, step), effort);
+
+        double sum = 0;
+        double squares = 0;
+        for (int r = 0; r < repetitions; r++) {
+            double estimate = splitting.estimate();
+            sum += estimate;
+            squares += estimate * estimate;
+        }
+        double mean = sum / repetitions;
+        double variance = repetitions > 1
+                ? (squares - repetitions * mean * mean) / (repetitions - 1) : Double.NaN;
+        double halfWidth = 1.96 * Math.sqrt(Math.max(variance, 0) / repetitions);
+
+        System.out.println(config);
+        System.out.println("P(clientQueue1 > " + threshold + " within " + config.getDuration()
+                + " minutes) = " + mean + " +/- " + halfWidth + " (95% CI)");
+        System.out.println(splitting.getEvents() + " events simulated in "
+                + repetitions + " repetitions");
+    }
+}
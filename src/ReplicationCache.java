@@ -0,0 +1,274 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The ReplicationCache class stores the results of EventsMcBurger
+ * replications on disk so that a configuration which has already been
+ * simulated is never simulated again.
+ *
+ * Results are appended to a data file. An index file maps the key of every
+ * configuration (see McBurgerConfig.key()) to the offset of its record in
+ * the data file; the whole index is read into memory on opening. Decoded
+ * results are kept in a bounded LRU map so that repeated lookups do not hit
+ * the disk.
+ *
+ * Both files are append-only. A record is appended at the actual end of the
+ * data file and its index entry right after the last complete entry, so a
+ * write that fails half way is ignored by the next put() and the next time
+ * the cache is opened.
+ *
+ * Offsets are tracked in memory, so only one ReplicationCache may have a
+ * directory open at a time. Opening takes an exclusive lock on a lock file
+ * in the directory and fails if another process (or another cache in this
+ * JVM) holds it.
+ */
+public class ReplicationCache {
+
+    /**
+     * version of the record format, part of the file names so that a
+     * format change starts a fresh cache instead of misreading the old one
+     */
+    private static final int FORMAT_VERSION = 4;
+
+    /**
+     * the lock file of the cache directory
+     */
+    private final RandomAccessFile lockFile;
+    /**
+     * exclusive lock on lockFile, held until close()
+     */
+    private final FileLock lock;
+    /**
+     * the data file holding the encoded results
+     */
+    private final RandomAccessFile data;
+    /**
+     * the index file mapping keys to records
+     */
+    private final RandomAccessFile indexData;
+    /**
+     * key of every stored configuration mapped to the offset of its record
+     */
+    private final Map<String, Long> index = new HashMap<String, Long>();
+    /**
+     * most recently used results, bounded to the capacity given on opening
+     */
+    private final Map<String, ReplicationResult> recent;
+    /**
+     * length of the complete entries of the index file, i.e. the offset of
+     * the next entry
+     */
+    private long indexLength;
+
+    /**
+     * Opens (or creates) the cache stored in the given directory.
+     *
+     * @param directory the directory holding the cache files
+     * @param capacity the maximum number of results kept decoded in memory
+     * @throws IOException if the cache files cannot be opened or the cache
+     *                     is already open elsewhere
+     */
+    public ReplicationCache(File directory, final int capacity) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create cache directory " + directory);
+        }
+        lockFile = new RandomAccessFile(new File(directory, "cache.lock"), "rw");
+        FileLock acquired;
+        try {
+            acquired = lockFile.getChannel().tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        }
+        if (acquired == null) {
+            lockFile.close();
+            throw new IOException("Cache directory " + directory + " is already in use");
+        }
+        lock = acquired;
+        try {
+            File dataFile = new File(directory, "replications-v" + FORMAT_VERSION + ".dat");
+            File indexFile = new File(directory, "replications-v" + FORMAT_VERSION + ".idx");
+
+            recent = new LinkedHashMap<String, ReplicationResult>(16, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry<String, ReplicationResult> eldest) {
+                    return size() > capacity;
+                }
+            };
+
+            data = new RandomAccessFile(dataFile, "rw");
+            indexLength = loadIndex(indexFile, data.length());
+
+            // drop a partially written index entry so the next one starts aligned
+            indexData = new RandomAccessFile(indexFile, "rw");
+            indexData.setLength(indexLength);
+        } catch (IOException e) {
+            // do not keep the directory locked by a cache that failed to open
+            lock.release();
+            lockFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the index file into memory. Entries pointing past the end of the
+     * data file belong to records whose write was interrupted and are skipped.
+     *
+     * @param indexFile the index file
+     * @param dataLength the length of the data file
+     * @return the length of the well-formed part of the index file
+     * @throws IOException if the index file cannot be read
+     */
+    private long loadIndex(File indexFile, long dataLength) throws IOException {
+        if (!indexFile.exists()) {
+            return 0;
+        }
+        long validLength = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        try {
+            while (true) {
+                String key = in.readUTF();
+                long offset = in.readLong();
+                int length = in.readInt();
+                if (offset + length <= dataLength) {
+                    index.put(key, offset);
+                }
+                validLength += 2 + key.length() + 8 + 4;
+            }
+        } catch (EOFException e) {
+            // end of the index (possibly a truncated last entry)
+        } finally {
+            in.close();
+        }
+        return validLength;
+    }
+
+    /**
+     * Returns the cached result of the given configuration.
+     *
+     * @param config the configuration to look up
+     * @return the cached result, or null if the configuration was never run
+     * @throws IOException if the data file cannot be read
+     */
+    public synchronized ReplicationResult get(McBurgerConfig config) throws IOException {
+        String key = config.key();
+        ReplicationResult result = recent.get(key);
+        if (result != null) {
+            return result;
+        }
+        Long offset = index.get(key);
+        if (offset == null) {
+            return null;
+        }
+        data.seek(offset);
+        result = ReplicationResult.readFrom(data);
+        // guard against hash collisions
+        if (!result.getConfig().equals(config)) {
+            return null;
+        }
+        recent.put(key, result);
+        return result;
+    }
+
+    /**
+     * Tells whether the given configuration has already been run.
+     *
+     * @param config the configuration to look up
+     * @return true if a result is stored for the configuration
+     */
+    public synchronized boolean contains(McBurgerConfig config) {
+        return index.containsKey(config.key());
+    }
+
+    /**
+     * Appends a result to the cache. Results of configurations already
+     * stored are ignored.
+     *
+     * If a write fails the cache stays usable: the record is not indexed,
+     * and the next put() starts again from the end of the data file and the
+     * last complete index entry.
+     *
+     * @param result the result to store
+     * @throws IOException if the cache files cannot be written
+     */
+    public synchronized void put(ReplicationResult result) throws IOException {
+        String key = result.getConfig().key();
+        if (index.containsKey(key)) {
+            return;
+        }
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        result.writeTo(new DataOutputStream(record));
+        // the end of the file, past whatever a failed put() may have left
+        long offset = data.length();
+        data.seek(offset);
+        data.write(record.toByteArray());
+
+        // the record must reach the data file before its index entry is written
+        ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        DataOutputStream entryOut = new DataOutputStream(entry);
+        entryOut.writeUTF(key);
+        entryOut.writeLong(offset);
+        entryOut.writeInt(record.size());
+        indexData.seek(indexLength);
+        indexData.write(entry.toByteArray());
+        if (indexData.length() > indexLength + entry.size()) {
+            // drop the tail of a longer entry whose write failed
+            indexData.setLength(indexLength + entry.size());
+        }
+
+        indexLength += entry.size();
+        index.put(key, offset);
+        recent.put(key, result);
+    }
+
+    /**
+     * Returns the cached result of the given configuration, running the
+     * replication and storing its result first if needed.
+     *
+     * @param config the configuration of the replication
+     * @return the result of the replication
+     * @throws IOException if the cache files cannot be accessed
+     */
+    public ReplicationResult getOrRun(McBurgerConfig config) throws IOException {
+        ReplicationResult result = get(config);
+        if (result == null) {
+            result = EventsMcBurger.runReplication(config);
+            put(result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of results stored in the cache.
+     *
+     * @return the number of stored results
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Flushes and closes the cache files.
+     *
+     * @throws IOException if the cache files cannot be closed
+     */
+    public synchronized void close() throws IOException {
+        try {
+            indexData.close();
+            data.close();
+        } finally {
+            lock.release();
+            lockFile.close();
+        }
+    }
+}
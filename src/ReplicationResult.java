@@ -0,0 +1,185 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The ReplicationResult class holds the summary statistics of one
+ * EventsMcBurger replication together with the configuration that
+ * produced them.
+ *
+ * The wait and time in the burger statistics cover every client that
+ * arrived; the times of the clients still in the burger at the end are
+ * counted up to the end (see EventsMcBurger.censorAtEnd()).
+ */
+public class ReplicationResult {
+
+    /**
+     * the configuration of the replication
+     */
+    private final McBurgerConfig config;
+    /**
+     * the number of events executed
+     */
+    private final long events;
+    /**
+     * the number of clients that left the burger
+     */
+    private final long clientsServed;
+    /**
+     * mean time in minutes a client waits in clientQueue1
+     */
+    private final double meanWait;
+    /**
+     * 95th percentile of the time in minutes a client waits in clientQueue1,
+     * within 0.5% (see QuantileHistogram)
+     */
+    private final double p95Wait;
+    /**
+     * mean time in minutes a client spends in the burger
+     */
+    private final double meanTimeInSystem;
+    /**
+     * time-weighted average length of clientQueue1
+     */
+    private final double averageQueueLength;
+    /**
+     * maximum length of clientQueue1
+     */
+    private final int maxQueueLength;
+    /**
+     * IPA derivative of meanWait with respect to each distribution mean,
+     * indexed as in Perturbation
+     */
+    private final double[] waitTimeGradient;
+    /**
+     * IPA derivative of meanTimeInSystem with respect to each distribution
+     * mean, indexed as in Perturbation
+     */
+    private final double[] timeInSystemGradient;
+
+    /**
+     * Constructor of a replication result.
+     *
+     * @param config the configuration of the replication
+     * @param events the number of events executed
+     * @param clientsServed the number of clients that left the burger
+     * @param meanWait mean time in minutes a client waits in clientQueue1
+     * @param p95Wait 95th percentile of the wait in clientQueue1
+     * @param meanTimeInSystem mean time in minutes a client spends in the burger
+     * @param averageQueueLength time-weighted average length of clientQueue1
+     * @param maxQueueLength maximum length of clientQueue1
+     * @param waitTimeGradient derivative of meanWait with respect to each
+     *                         distribution mean
+     * @param timeInSystemGradient derivative of meanTimeInSystem with respect
+     *                             to each distribution mean
+     */
+    public ReplicationResult(McBurgerConfig config, long events, long clientsServed, double meanWait,
+                             double p95Wait, double meanTimeInSystem, double averageQueueLength,
+                             int maxQueueLength, double[] waitTimeGradient,
+                             double[] timeInSystemGradient) {
+        this.config = config;
+        this.events = events;
+        this.clientsServed = clientsServed;
+        this.meanWait = meanWait;
+        this.p95Wait = p95Wait;
+        this.meanTimeInSystem = meanTimeInSystem;
+        this.averageQueueLength = averageQueueLength;
+        this.maxQueueLength = maxQueueLength;
+        this.waitTimeGradient = waitTimeGradient;
+        this.timeInSystemGradient = timeInSystemGradient;
+    }
+
+    /**
+     * Writes this result, configuration included, in binary form.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        config.writeTo(out);
+        out.writeLong(events);
+        out.writeLong(clientsServed);
+        out.writeDouble(meanWait);
+        out.writeDouble(p95Wait);
+        out.writeDouble(meanTimeInSystem);
+        out.writeDouble(averageQueueLength);
+        out.writeInt(maxQueueLength);
+        for (int i = 0; i < Perturbation.NUM_PARAMETERS; i++) {
+            out.writeDouble(waitTimeGradient[i]);
+            out.writeDouble(timeInSystemGradient[i]);
+        }
+    }
+
+    /**
+     * Reads a result written by writeTo().
+     *
+     * @param in the stream to read from
+     * @return the result read
+     * @throws IOException if the stream cannot be read
+     */
+    public static ReplicationResult readFrom(DataInput in) throws IOException {
+        McBurgerConfig config = McBurgerConfig.readFrom(in);
+        long events = in.readLong();
+        long clientsServed = in.readLong();
+        double meanWait = in.readDouble();
+        double p95Wait = in.readDouble();
+        double meanTimeInSystem = in.readDouble();
+        double averageQueueLength = in.readDouble();
+        int maxQueueLength = in.readInt();
+        double[] waitTimeGradient = Perturbation.zero();
+        double[] timeInSystemGradient = Perturbation.zero();
+        for (int i = 0; i < Perturbation.NUM_PARAMETERS; i++) {
+            waitTimeGradient[i] = in.readDouble();
+            timeInSystemGradient[i] = in.readDouble();
+        }
+        return new ReplicationResult(config, events, clientsServed, meanWait, p95Wait, meanTimeInSystem,
+                averageQueueLength, maxQueueLength, waitTimeGradient, timeInSystemGradient);
+    }
+
+    public McBurgerConfig getConfig() {
+        return config;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getClientsServed() {
+        return clientsServed;
+    }
+
+    public double getMeanWait() {
+        return meanWait;
+    }
+
+    public double getP95Wait() {
+        return p95Wait;
+    }
+
+    public double getMeanTimeInSystem() {
+        return meanTimeInSystem;
+    }
+
+    public double getAverageQueueLength() {
+        return averageQueueLength;
+    }
+
+    public int getMaxQueueLength() {
+        return maxQueueLength;
+    }
+
+    public double[] getWaitTimeGradient() {
+        return waitTimeGradient.clone();
+    }
+
+    public double[] getTimeInSystemGradient() {
+        return timeInSystemGradient.clone();
+    }
+
+    public String toString() {
+        return config + " -> events=" + events + ";served=" + clientsServed + ";meanWait=" + meanWait
+                + ";p95Wait=" + p95Wait
+                + ";meanTimeInSystem=" + meanTimeInSystem
+                + ";avgQueue=" + averageQueueLength + ";maxQueue=" + maxQueueLength;
+    }
+}
@@ -0,0 +1,52 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The ReplicationWorker is the main class of a child JVM started by the
+ * WorkerFarm.
+ *
+ * It reads configurations (see McBurgerConfig.writeTo()) from its standard
+ * input, runs one replication for each of them and writes the results (see
+ * ReplicationResult.writeTo()) to its standard output, one at a time. It
+ * stops when its standard input is closed.
+ *
+ * Since every worker lives in its own JVM, the static model parameters of
+ * EventsMcBurger are never shared between replications running in parallel.
+ */
+public class ReplicationWorker {
+
+    /**
+     * Runs the worker.
+     *
+     * @param args is an array of command-line arguments (will be ignored here)
+     * @throws IOException if the pipes to the coordinator are broken
+     */
+    public static void main(String[] args) throws IOException {
+
+        // standard output is reserved for the results, so anything the
+        // simulator prints goes to standard error instead
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        while (true) {
+            McBurgerConfig config;
+            try {
+                config = McBurgerConfig.readFrom(in);
+            } catch (EOFException e) {
+                // the coordinator has no more work for us
+                break;
+            }
+            EventsMcBurger.runReplication(config).writeTo(out);
+            out.flush();
+        }
+        out.close();
+    }
+}
@@ -0,0 +1,552 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * The ScalingBenchmark measures how the cost of an EventsMcBurger
+ * replication grows along three axes: the duration of the simulation, the
+ * client arrival rate and the staff size.
+ *
+ * Every point runs headless (no trace, debug output or report) in a fresh
+ * child JVM, so that points do not share heap, JIT or GC state. Before
+ * measuring, the child runs warm-up replications of the point's
+ * configuration (with other seeds and at most WARM_UP_MINUTES long) until
+ * their throughput settles. The child records the wall time, the events
+ * per second, the largest live heap left after a collection during the
+ * run, the GC count and time, the bytes allocated per simulated client and
+ * the longest GC pause.
+ *
+ * Measurements are appended, tagged with a build label, to a tab-separated
+ * results file. Along every axis the growth of wall time and live heap
+ * with the number of simulated clients is fitted on a log-log scale, and
+ * growth steeper than linear is flagged, as is a rising allocation per
+ * client. Points faster than MIN_FIT_WALL_MS are left out of the fit, their
+ * time being dominated by fixed costs. Two builds in the same results file
+ * can be compared point by point.
+ *
+ * Usage:
+ *   ScalingBenchmark run label [results file]
+ *   ScalingBenchmark compare labelA labelB [results file]
+ */
+public class ScalingBenchmark {
+
+    /**
+     * the default results file
+     */
+    private static final String RESULTS_FILE = "scaling-benchmark-v2.tsv";
+    /**
+     * log-log slope above which growth is flagged as super-linear
+     */
+    private static final double SUPER_LINEAR_SLOPE = 1.2;
+    /**
+     * wall time in milliseconds under which a point is left out of the fits
+     */
+    private static final long MIN_FIT_WALL_MS = 200;
+    /**
+     * longest warm-up replication in simulated minutes
+     */
+    private static final long WARM_UP_MINUTES = 90000;
+    /**
+     * maximum number of warm-up replications
+     */
+    private static final int MAX_WARM_UPS = 8;
+    /**
+     * relative change of throughput under which the warm-up is over
+     */
+    private static final double STEADY = 0.10;
+    /**
+     * relative change above which compare flags a point
+     */
+    private static final double REGRESSION = 0.10;
+    /**
+     * prefix of the line a child JVM reports its measurement on
+     */
+    private static final String RESULT_PREFIX = "RESULT\t";
+    /**
+     * columns of the results file
+     */
+    private static final String HEADER = "label\taxis\tvalue\tduration\tcashiers\tchefs\tarrivalMean"
+            + "\tclients\tevents\twallMs\teventsPerSec\tliveHeapKB\tgcCount\tgcMs\tallocBytesPerClient"
+            + "\tmaxGcPauseMs";
+
+    /**
+     * Returns the benchmark points, grouped by axis.
+     *
+     * The duration axis uses a stable staffing, so that the queues stay
+     * bounded and only the horizon grows. The arrival axis keeps enough staff
+     * for the fastest arrivals. The staff axis scales the arrival rate with
+     * the staff, keeping the utilisation constant.
+     *
+     * @return the configuration of every point, keyed by axis and value
+     */
+    private static Map<String, Map<String, McBurgerConfig>> points() {
+        McBurgerConfig base = McBurgerConfig.current();
+        Map<String, Map<String, McBurgerConfig>> axes = new LinkedHashMap<String, Map<String, McBurgerConfig>>();
+
+        Map<String, McBurgerConfig> duration = new LinkedHashMap<String, McBurgerConfig>();
+        for (long minutes = 900; minutes <= 9000000; minutes *= 10) {
+            duration.put(String.valueOf(minutes), new McBurgerConfig(base.getSeed(), minutes, 5, 4,
+                    base.getClientArrivalMean(), base.getTakingOrderMean(),
+                    base.getPayingOrderMean(), base.getCookingOrderMean()));
+        }
+        axes.put("duration", duration);
+
+        Map<String, McBurgerConfig> arrival = new LinkedHashMap<String, McBurgerConfig>();
+        for (double mean = 5.0; mean >= 0.3; mean /= 2) {
+            arrival.put(String.valueOf(mean), new McBurgerConfig(base.getSeed(), 90000, 64, 48,
+                    mean, base.getTakingOrderMean(),
+                    base.getPayingOrderMean(), base.getCookingOrderMean()));
+        }
+        axes.put("arrival", arrival);
+
+        Map<String, McBurgerConfig> staff = new LinkedHashMap<String, McBurgerConfig>();
+        for (int cashiers = 4; cashiers <= 512; cashiers *= 2) {
+            // about 80% of the cashiers and 60% of the chefs busy
+            double mean = 12.5 / (0.8 * cashiers);
+            staff.put(String.valueOf(cashiers), new McBurgerConfig(base.getSeed(), 9000, cashiers,
+                    (int) Math.ceil(0.75 * cashiers), mean, base.getTakingOrderMean(),
+                    base.getPayingOrderMean(), base.getCookingOrderMean()));
+        }
+        axes.put("staff", staff);
+        return axes;
+    }
+
+    /**
+     * Runs the benchmark or compares two builds.
+     *
+     * @param args see the class comment
+     * @throws Exception if the benchmark cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 2 && "run".equals(args[0])) {
+            run(args[1], new File(args.length > 2 ? args[2] : RESULTS_FILE));
+        } else if (args.length >= 3 && "compare".equals(args[0])) {
+            compare(args[1], args[2], new File(args.length > 3 ? args[3] : RESULTS_FILE));
+        } else if (args.length >= 2 && "point".equals(args[0])) {
+            measure(args[1]);
+        } else {
+            System.err.println("Usage: ScalingBenchmark run label [results file]");
+            System.err.println("       ScalingBenchmark compare labelA labelB [results file]");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Measures every point in a child JVM, appends the measurements to the
+     * results file and flags super-linear growth.
+     */
+    private static void run(String label, File results) throws IOException, InterruptedException {
+        boolean newFile = !results.exists() || results.length() == 0;
+        PrintWriter out = new PrintWriter(new FileWriter(results, true));
+        if (newFile) {
+            out.println(HEADER);
+        }
+        try {
+            for (Map.Entry<String, Map<String, McBurgerConfig>> axis : points().entrySet()) {
+                List<String[]> rows = new ArrayList<String[]>();
+                for (Map.Entry<String, McBurgerConfig> point : axis.getValue().entrySet()) {
+                    McBurgerConfig config = point.getValue();
+                    String measurement = measureInChild(config);
+                    String row = label + "\t" + axis.getKey() + "\t" + point.getKey()
+                            + "\t" + config.getDuration() + "\t" + config.getNumCashiers()
+                            + "\t" + config.getNumChefs() + "\t" + config.getClientArrivalMean()
+                            + "\t" + measurement;
+                    out.println(row);
+                    out.flush();
+                    System.out.println(row);
+                    rows.add(row.split("\t"));
+                }
+                flagGrowth(axis.getKey(), rows);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Runs one point in a child JVM and returns its measurement columns.
+     */
+    private static String measureInChild(McBurgerConfig config) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ScalingBenchmark.class.getName());
+        command.add("point");
+        command.add(config.toString());
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        Process process = builder.start();
+
+        String measurement = null;
+        BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    measurement = line.substring(RESULT_PREFIX.length());
+                }
+            }
+        } finally {
+            in.close();
+        }
+        int status = process.waitFor();
+        if (measurement == null) {
+            throw new IOException("Benchmark JVM exited with status " + status + " on " + config);
+        }
+        return measurement;
+    }
+
+    /**
+     * Body of the child JVM: warms up, runs the point and prints the
+     * measurement.
+     *
+     * @param canonical the canonical form of the configuration (see
+     *                  McBurgerConfig.toString())
+     */
+    private static void measure(String canonical) throws InterruptedException {
+        // the simulator may print on standard output, keep it for the result
+        PrintStream out = new PrintStream(new FileOutputStream(FileDescriptor.out), true);
+        System.setOut(System.err);
+
+        McBurgerConfig config = parse(canonical);
+        warmUp(config);
+        System.gc();
+
+        final Set<String> heapPools = new HashSet<String>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+        final AtomicLong liveHeap = new AtomicLong(-1);
+        final AtomicLong longestPause = new AtomicLong(-1);
+        final AtomicLong collections = new AtomicLong();
+        NotificationListener listener = new NotificationListener() {
+            public void handleNotification(Notification notification, Object handback) {
+                if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+                        .equals(notification.getType())) {
+                    return;
+                }
+                GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+                        .from((CompositeData) notification.getUserData());
+                long live = 0;
+                for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+                    if (heapPools.contains(pool.getKey())) {
+                        live += pool.getValue().getUsed();
+                    }
+                }
+                raise(liveHeap, live);
+                if (!isConcurrentCycle(info.getGcName())) {
+                    raise(longestPause, info.getGcInfo().getDuration());
+                }
+                collections.incrementAndGet();
+            }
+        };
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+        }
+
+        boolean allocationMeasured = allocationSupported();
+        long gcCount = -gcCount();
+        long gcTime = -gcTime();
+        long allocated = allocationMeasured ? -allocatedBytes() : 0;
+        long start = System.nanoTime();
+
+        ReplicationResult result = EventsMcBurger.runReplication(config);
+
+        long wallNanos = System.nanoTime() - start;
+        if (allocationMeasured) {
+            allocated += allocatedBytes();
+        }
+        gcCount += gcCount();
+        gcTime += gcTime();
+        // notifications are delivered asynchronously, wait for the last ones
+        for (int i = 0; i < 100 && collections.get() < gcCount; i++) {
+            Thread.sleep(10);
+        }
+
+        long clients = Math.max(result.getClientsServed(), 1);
+        out.println(RESULT_PREFIX + result.getClientsServed()
+                + "\t" + result.getEvents()
+                + "\t" + wallNanos / 1000000
+                + "\t" + (long) (result.getEvents() / (wallNanos / 1e9))
+                + "\t" + (liveHeap.get() < 0 ? -1 : liveHeap.get() / 1024)
+                + "\t" + gcCount
+                + "\t" + gcTime
+                + "\t" + (allocationMeasured ? allocated / clients : -1)
+                + "\t" + longestPause.get());
+    }
+
+    /**
+     * Raises a maximum to the given value if it is larger.
+     */
+    private static void raise(AtomicLong maximum, long value) {
+        long current = maximum.get();
+        while (value > current && !maximum.compareAndSet(current, value)) {
+            current = maximum.get();
+        }
+    }
+
+    /**
+     * Tells whether a collector reports whole concurrent cycles rather than
+     * pauses (the G1 "Concurrent GC", ZGC and Shenandoah "Cycles" and CMS
+     * beans), whose durations are mostly spent alongside the application.
+     */
+    private static boolean isConcurrentCycle(String collector) {
+        return collector.contains("Concurrent") || collector.endsWith("Cycles");
+    }
+
+    /**
+     * Runs replications of the configuration, with other seeds and at most
+     * WARM_UP_MINUTES long, until the events per second of two consecutive
+     * runs differ by less than STEADY, or MAX_WARM_UPS runs were made.
+     */
+    private static void warmUp(McBurgerConfig config) {
+        double previous = 0;
+        for (int i = 1; i <= MAX_WARM_UPS; i++) {
+            McBurgerConfig warmUp = new McBurgerConfig(config.getSeed() + i,
+                    Math.min(config.getDuration(), WARM_UP_MINUTES),
+                    config.getNumCashiers(), config.getNumChefs(), config.getClientArrivalMean(),
+                    config.getTakingOrderMean(), config.getPayingOrderMean(), config.getCookingOrderMean());
+            long start = System.nanoTime();
+            ReplicationResult result = EventsMcBurger.runReplication(warmUp);
+            double throughput = result.getEvents() / ((System.nanoTime() - start) / 1e9);
+            if (previous > 0 && Math.abs(throughput - previous) < STEADY * previous) {
+                return;
+            }
+            previous = throughput;
+        }
+        System.err.println("warm-up of " + config + " did not reach a steady throughput");
+    }
+
+    /**
+     * Parses the canonical form of a configuration.
+     */
+    private static McBurgerConfig parse(String canonical) {
+        Map<String, String> fields = new LinkedHashMap<String, String>();
+        for (String field : canonical.split(";")) {
+            String[] pair = field.split("=", 2);
+            fields.put(pair[0], pair[1]);
+        }
+        return new McBurgerConfig(Long.parseLong(fields.get("seed")),
+                Long.parseLong(fields.get("duration")),
+                Integer.parseInt(fields.get("cashiers")), Integer.parseInt(fields.get("chefs")),
+                Double.parseDouble(fields.get("arrival")), Double.parseDouble(fields.get("taking")),
+                Double.parseDouble(fields.get("paying")), Double.parseDouble(fields.get("cooking")));
+    }
+
+    /**
+     * Returns the number of collections of all garbage collectors.
+     */
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gc.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the accumulated collection time in milliseconds of all
+     * garbage collectors.
+     */
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(gc.getCollectionTime(), 0);
+        }
+        return time;
+    }
+
+    /**
+     * Tells whether the JVM can measure the bytes allocated by threads.
+     */
+    private static boolean allocationSupported() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * Returns the bytes allocated by all live threads. Only valid if
+     * allocationSupported() is true.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long bytes : ((com.sun.management.ThreadMXBean) threads)
+                .getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(bytes, 0);
+        }
+        return total;
+    }
+
+    /**
+     * Fits the log-log slope of wall time and live heap against the number
+     * of simulated clients along an axis, and flags slopes above
+     * SUPER_LINEAR_SLOPE and a rising allocation per client. Points faster
+     * than MIN_FIT_WALL_MS are left out of the fits.
+     */
+    private static void flagGrowth(String axis, List<String[]> rows) {
+        List<String[]> fitted = new ArrayList<String[]>();
+        for (String[] row : rows) {
+            if (Long.parseLong(row[9]) >= MIN_FIT_WALL_MS) {
+                fitted.add(row);
+            }
+        }
+        if (fitted.size() < 2) {
+            System.out.println("skipped " + axis + ": fewer than 2 points take "
+                    + MIN_FIT_WALL_MS + " ms or more");
+        } else {
+            double[] clients = column(fitted, 7);
+            report(axis, "wall time", slope(clients, column(fitted, 9)));
+            report(axis, "live heap", slope(clients, column(fitted, 11)));
+        }
+
+        double[] allocation = column(rows, 14);
+        double first = allocation[0];
+        double last = allocation[allocation.length - 1];
+        if (first > 0 && last > 2 * first) {
+            System.out.println("WARNING " + axis + ": allocation per client grows from "
+                    + (long) first + " to " + (long) last + " bytes");
+        }
+    }
+
+    /**
+     * Prints a fitted slope, flagged if super-linear.
+     */
+    private static void report(String axis, String metric, double slope) {
+        String verdict = slope > SUPER_LINEAR_SLOPE ? "WARNING super-linear" : "ok";
+        System.out.println(verdict + " " + axis + ": " + metric + " ~ clients^"
+                + String.format("%.2f", slope));
+    }
+
+    /**
+     * Returns a numeric column of the rows.
+     */
+    private static double[] column(List<String[]> rows, int index) {
+        double[] values = new double[rows.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Double.parseDouble(rows.get(i)[index]);
+        }
+        return values;
+    }
+
+    /**
+     * Returns the least squares slope of log(y) against log(x), ignoring
+     * non-positive values.
+     */
+    private static double slope(double[] x, double[] y) {
+        double n = 0, sx = 0, sy = 0, sxx = 0, sxy = 0;
+        for (int i = 0; i < x.length; i++) {
+            if (x[i] > 0 && y[i] > 0) {
+                double lx = Math.log(x[i]);
+                double ly = Math.log(y[i]);
+                n++;
+                sx += lx;
+                sy += ly;
+                sxx += lx * lx;
+                sxy += lx * ly;
+            }
+        }
+        double denominator = n * sxx - sx * sx;
+        return n < 2 || denominator == 0 ? Double.NaN : (n * sxy - sx * sy) / denominator;
+    }
+
+    /**
+     * Compares the wall time, live heap, allocation per client and longest
+     * GC pause of two builds point by point. Pauses are reported in whole
+     * milliseconds, so a longer pause is only flagged if it also grew by
+     * more than one millisecond.
+     */
+    private static void compare(String labelA, String labelB, File results) throws IOException {
+        Map<String, String[]> a = new LinkedHashMap<String, String[]>();
+        Map<String, String[]> b = new LinkedHashMap<String, String[]>();
+        BufferedReader in = new BufferedReader(new FileReader(results));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] row = line.split("\t");
+                // the last measurement of a build wins
+                if (row[0].equals(labelA)) {
+                    a.put(row[1] + "=" + row[2], row);
+                } else if (row[0].equals(labelB)) {
+                    b.put(row[1] + "=" + row[2], row);
+                }
+            }
+        } finally {
+            in.close();
+        }
+
+        System.out.println("point\twall " + labelB + "/" + labelA
+                + "\theap " + labelB + "/" + labelA + "\talloc/client " + labelB + "/" + labelA
+                + "\tmax pause " + labelB + "/" + labelA);
+        for (Map.Entry<String, String[]> entry : a.entrySet()) {
+            String[] other = b.get(entry.getKey());
+            if (other == null) {
+                continue;
+            }
+            double wall = ratio(entry.getValue(), other, 9);
+            double heap = ratio(entry.getValue(), other, 11);
+            double allocation = ratio(entry.getValue(), other, 14);
+            double pause = ratio(entry.getValue(), other, 15);
+            boolean longerPause = pause > 1 + REGRESSION
+                    && Double.parseDouble(other[15]) - Double.parseDouble(entry.getValue()[15]) > 1;
+            boolean regression = wall > 1 + REGRESSION || heap > 1 + REGRESSION
+                    || allocation > 1 + REGRESSION || longerPause;
+            System.out.println(entry.getKey() + "\t" + format(wall) + "\t" + format(heap)
+                    + "\t" + format(allocation) + "\t" + format(pause)
+                    + (regression ? "\tREGRESSION" : ""));
+        }
+    }
+
+    /**
+     * Returns the ratio of a column of row b to the same column of row a, or
+     * NaN (never flagged) if either row did not measure it (-1, or a row
+     * written before the column existed).
+     */
+    private static double ratio(String[] a, String[] b, int index) {
+        if (index >= a.length || index >= b.length) {
+            return Double.NaN;
+        }
+        double before = Double.parseDouble(a[index]);
+        double after = Double.parseDouble(b[index]);
+        if (before < 0 || after < 0) {
+            return Double.NaN;
+        }
+        return after / Math.max(before, 1e-9);
+    }
+
+    /**
+     * Formats a ratio, "n/a" if it could not be computed.
+     */
+    private static String format(double ratio) {
+        return Double.isNaN(ratio) ? "n/a" : String.format("%.2f", ratio);
+    }
+}
@@ -0,0 +1,201 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The SensitivityAnalysis prints how the mean wait and the mean time in the
+ * burger react to each of the four distribution means of EventsMcBurger.
+ *
+ * The derivatives are the IPA estimates gathered during every replication
+ * (see Perturbation), so they need no extra runs with perturbed means.
+ * They are averaged over independent replications with consecutive seeds
+ * to get a confidence interval.
+ *
+ * With the --check option every derivative is also estimated by central
+ * differences: each mean is moved up and down by RELATIVE_STEP of its value
+ * and the same seeds are run again, which takes eight times as many
+ * replications. The two estimates are printed side by side, with a warning
+ * when their confidence intervals do not overlap.
+ */
+public class SensitivityAnalysis {
+
+    /**
+     * step of the central differences, relative to the mean moved
+     */
+    private static final double RELATIVE_STEP = 0.05;
+
+    /**
+     * Runs the analysis for the default configuration.
+     *
+     * @param args the number of workers, the number of replications
+     *             (default: available processors and 30) and optionally a
+     *             target mean wait in minutes, for which the cooking mean
+     *             reaching it is extrapolated to first order; --check
+     *             anywhere also runs the central difference check
+     * @throws Exception if the replications cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+
+        List<String> arguments = new ArrayList<String>(Arrays.asList(args));
+        boolean check = arguments.remove("--check");
+        args = arguments.toArray(new String[0]);
+
+        int workers = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        int replications = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+
+        McBurgerConfig base = McBurgerConfig.current();
+        double[] step = new double[Perturbation.NUM_PARAMETERS];
+        List<McBurgerConfig> configs = new ArrayList<McBurgerConfig>();
+        for (int r = 0; r < replications; r++) {
+            McBurgerConfig config = base.withSeed(base.getSeed() + r);
+            configs.add(config);
+            for (int i = 0; i < Perturbation.NUM_PARAMETERS && check; i++) {
+                step[i] = RELATIVE_STEP * getMean(base, i);
+                configs.add(withMean(config, i, getMean(base, i) + step[i]));
+                configs.add(withMean(config, i, getMean(base, i) - step[i]));
+            }
+        }
+
+        ReplicationCache cache = new ReplicationCache(new File("replication-cache"), 10000);
+        WorkerFarm farm = new WorkerFarm(workers, 2, cache);
+        Map<McBurgerConfig, ReplicationResult> results = new HashMap<McBurgerConfig, ReplicationResult>();
+        for (ReplicationResult result : farm.run(configs)) {
+            results.put(result.getConfig(), result);
+        }
+        cache.close();
+        if (!farm.getFailedUnits().isEmpty()) {
+            throw new IllegalStateException(farm.getFailedUnits().size() + " replications failed");
+        }
+
+        double[] meanWait = new double[replications];
+        double[][] waitGradient = new double[Perturbation.NUM_PARAMETERS][replications];
+        double[][] timeInSystemGradient = new double[Perturbation.NUM_PARAMETERS][replications];
+        double[][] waitDifference = new double[Perturbation.NUM_PARAMETERS][replications];
+        double[][] timeInSystemDifference = new double[Perturbation.NUM_PARAMETERS][replications];
+        for (int r = 0; r < replications; r++) {
+            McBurgerConfig config = base.withSeed(base.getSeed() + r);
+            ReplicationResult result = results.get(config);
+            meanWait[r] = result.getMeanWait();
+            double[] dWait = result.getWaitTimeGradient();
+            double[] dTime = result.getTimeInSystemGradient();
+            for (int i = 0; i < Perturbation.NUM_PARAMETERS; i++) {
+                waitGradient[i][r] = dWait[i];
+                timeInSystemGradient[i][r] = dTime[i];
+                if (!check) {
+                    continue;
+                }
+                ReplicationResult up = results.get(withMean(config, i, getMean(base, i) + step[i]));
+                ReplicationResult down = results.get(withMean(config, i, getMean(base, i) - step[i]));
+                waitDifference[i][r] = (up.getMeanWait() - down.getMeanWait()) / (2 * step[i]);
+                timeInSystemDifference[i][r] = (up.getMeanTimeInSystem() - down.getMeanTimeInSystem())
+                        / (2 * step[i]);
+            }
+        }
+
+        System.out.println(replications + " replications of " + base);
+        System.out.println("mean wait: " + interval(meanWait));
+        for (int i = 0; i < Perturbation.NUM_PARAMETERS; i++) {
+            if (check) {
+                compare("d meanWait / d " + Perturbation.PARAMETER_NAMES[i],
+                        waitGradient[i], waitDifference[i]);
+                compare("d meanTimeInSystem / d " + Perturbation.PARAMETER_NAMES[i],
+                        timeInSystemGradient[i], timeInSystemDifference[i]);
+            } else {
+                System.out.println("d meanWait / d " + Perturbation.PARAMETER_NAMES[i] + ": "
+                        + interval(waitGradient[i]));
+                System.out.println("d meanTimeInSystem / d " + Perturbation.PARAMETER_NAMES[i] + ": "
+                        + interval(timeInSystemGradient[i]));
+            }
+        }
+
+        if (args.length > 2) {
+            double target = Double.parseDouble(args[2]);
+            double slope = mean(waitGradient[Perturbation.COOKING_ORDER]);
+            double cookingMean = base.getCookingOrderMean() + (target - mean(meanWait)) / slope;
+            System.out.println("cooking mean for a mean wait of " + target
+                    + " minutes (first-order estimate): " + cookingMean);
+        }
+    }
+
+    /**
+     * Returns the distribution mean of the given index (see Perturbation)
+     * of a configuration.
+     */
+    private static double getMean(McBurgerConfig config, int parameter) {
+        switch (parameter) {
+            case Perturbation.CLIENT_ARRIVAL:
+                return config.getClientArrivalMean();
+            case Perturbation.TAKING_ORDER:
+                return config.getTakingOrderMean();
+            case Perturbation.PAYING_ORDER:
+                return config.getPayingOrderMean();
+            default:
+                return config.getCookingOrderMean();
+        }
+    }
+
+    /**
+     * Returns a copy of a configuration with the distribution mean of the
+     * given index (see Perturbation) replaced.
+     */
+    private static McBurgerConfig withMean(McBurgerConfig config, int parameter, double value) {
+        double[] means = new double[Perturbation.NUM_PARAMETERS];
+        for (int i = 0; i < means.length; i++) {
+            means[i] = i == parameter ? value : getMean(config, i);
+        }
+        return new McBurgerConfig(config.getSeed(), config.getDuration(),
+                config.getNumCashiers(), config.getNumChefs(),
+                means[Perturbation.CLIENT_ARRIVAL], means[Perturbation.TAKING_ORDER],
+                means[Perturbation.PAYING_ORDER], means[Perturbation.COOKING_ORDER]);
+    }
+
+    /**
+     * Prints the IPA and the central difference estimates of a derivative,
+     * warning when their confidence intervals do not overlap.
+     */
+    private static void compare(String name, double[] ipa, double[] difference) {
+        System.out.println(name + ": " + interval(ipa)
+                + " (central difference: " + interval(difference) + ")");
+        double gap = Math.abs(mean(ipa) - mean(difference));
+        if (gap > halfWidth(ipa) + halfWidth(difference)) {
+            System.out.println("  WARNING: IPA and central difference estimates disagree");
+        }
+    }
+
+    /**
+     * Returns the mean of the values.
+     */
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * Formats the mean of the values with the half width of its 95%
+     * confidence interval (normal approximation).
+     */
+    private static String interval(double[] values) {
+        return mean(values) + " +/- " + halfWidth(values);
+    }
+
+    /**
+     * Returns the half width of the 95% confidence interval of the mean of
+     * the values (normal approximation).
+     */
+    private static double halfWidth(double[] values) {
+        double mean = mean(values);
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        return values.length > 1
+                ? 1.96 * Math.sqrt(squares / (values.length - 1) / values.length) : Double.NaN;
+    }
+}
@@ -0,0 +1,358 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The WorkerFarm runs an experiment campaign, i.e. a list of replications,
+ * on a pool of local child JVMs (see ReplicationWorker).
+ *
+ * Every configuration of the campaign is a work unit. Units are kept in a
+ * shared queue and every worker takes the next one as soon as it returns a
+ * result, so faster workers simply do more units. Each worker talks to its
+ * JVM over the JVM's standard input and output.
+ *
+ * When a child JVM dies, or does not answer within the unit timeout, it is
+ * destroyed, its unit goes back to the queue and a new JVM is started in
+ * its place. A unit failing more than the allowed number of times is given
+ * up.
+ *
+ * Units already in the cache (if one is given) are not run at all, and
+ * every result is put in the cache as soon as it arrives, so an interrupted
+ * campaign can be restarted without losing finished units. A result that
+ * cannot be cached is still returned; such failures are only counted.
+ */
+public class WorkerFarm {
+
+    /**
+     * the number of child JVMs
+     */
+    private final int numWorkers;
+    /**
+     * the number of times a unit is retried after its JVM died
+     */
+    private final int maxRetries;
+    /**
+     * the cache results are looked up in and stored to, may be null
+     */
+    private final ReplicationCache cache;
+    /**
+     * extra options passed to every child JVM, e.g. -Xmx
+     */
+    private final List<String> jvmOptions = new ArrayList<String>();
+    /**
+     * time in milliseconds a child JVM may take for one unit before it is
+     * considered hung, 0 for no limit
+     */
+    private long unitTimeoutMillis = TimeUnit.MINUTES.toMillis(30);
+    /**
+     * the number of results of the last campaign that could not be cached
+     */
+    private final AtomicInteger cacheErrors = new AtomicInteger();
+    /**
+     * the units given up in the last campaign
+     */
+    private final List<McBurgerConfig> failedUnits =
+            Collections.synchronizedList(new ArrayList<McBurgerConfig>());
+
+    /**
+     * Constructor of the worker farm.
+     *
+     * @param numWorkers the number of child JVMs
+     * @param maxRetries the number of times a unit is retried after its JVM died
+     * @param cache the cache results are looked up in and stored to, or null
+     */
+    public WorkerFarm(int numWorkers, int maxRetries, ReplicationCache cache) {
+        this.numWorkers = numWorkers;
+        this.maxRetries = maxRetries;
+        this.cache = cache;
+    }
+
+    /**
+     * Adds an option passed to every child JVM.
+     *
+     * @param option the JVM option, e.g. "-Xmx256m"
+     */
+    public void addJvmOption(String option) {
+        jvmOptions.add(option);
+    }
+
+    /**
+     * Sets the time a child JVM may take for one unit. A JVM exceeding it is
+     * destroyed and the unit is retried as if the JVM had died.
+     *
+     * @param timeout the time limit per unit, 0 for no limit
+     * @param unit the unit of the time limit
+     */
+    public void setUnitTimeout(long timeout, TimeUnit unit) {
+        unitTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Returns the number of results of the last campaign that were computed
+     * but could not be put in the cache.
+     *
+     * @return the number of cache failures
+     */
+    public int getCacheErrors() {
+        return cacheErrors.get();
+    }
+
+    /**
+     * Returns the units given up in the last campaign.
+     *
+     * @return the failed units
+     */
+    public List<McBurgerConfig> getFailedUnits() {
+        return new ArrayList<McBurgerConfig>(failedUnits);
+    }
+
+    /**
+     * A work unit: a configuration and the number of times it was tried.
+     */
+    private static class Unit {
+        private final McBurgerConfig config;
+        private int attempts;
+
+        private Unit(McBurgerConfig config) {
+            this.config = config;
+        }
+    }
+
+    /**
+     * Runs a campaign and waits for all its units to be done.
+     *
+     * @param configs the configurations to run
+     * @return the results in the order of the configurations, without the
+     *         units given up (see getFailedUnits())
+     * @throws IOException if the cache cannot be accessed
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public List<ReplicationResult> run(List<McBurgerConfig> configs)
+            throws IOException, InterruptedException {
+
+        failedUnits.clear();
+        cacheErrors.set(0);
+        final Map<McBurgerConfig, ReplicationResult> results =
+                Collections.synchronizedMap(new LinkedHashMap<McBurgerConfig, ReplicationResult>());
+
+        // skip the units already computed
+        final BlockingQueue<Unit> pending = new LinkedBlockingQueue<Unit>();
+        for (McBurgerConfig config : configs) {
+            ReplicationResult cached = cache == null ? null : cache.get(config);
+            if (cached != null) {
+                results.put(config, cached);
+            } else if (!results.containsKey(config)) {
+                results.put(config, null);
+                pending.add(new Unit(config));
+            }
+        }
+
+        final CountDownLatch done = new CountDownLatch(pending.size());
+        // destroys the child JVMs that exceed the unit timeout
+        final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "McBurger watchdog");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < Math.min(numWorkers, pending.size()); i++) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    serve(pending, done, results, watchdog);
+                }
+            }, "McBurger worker " + i);
+            thread.start();
+            threads.add(thread);
+        }
+
+        try {
+            done.await();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            watchdog.shutdownNow();
+        }
+
+        List<ReplicationResult> ordered = new ArrayList<ReplicationResult>();
+        for (McBurgerConfig config : configs) {
+            ReplicationResult result = results.get(config);
+            if (result != null) {
+                ordered.add(result);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Body of the thread driving one child JVM. Takes units until the
+     * campaign is done, restarting the JVM whenever it dies or hangs.
+     */
+    private void serve(BlockingQueue<Unit> pending, CountDownLatch done,
+                       Map<McBurgerConfig, ReplicationResult> results,
+                       ScheduledExecutorService watchdog) {
+        Process process = null;
+        DataOutputStream toWorker = null;
+        DataInputStream fromWorker = null;
+        try {
+            while (done.getCount() > 0) {
+                // other workers may still hand units back, so keep polling
+                Unit unit = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (unit == null) {
+                    continue;
+                }
+                unit.attempts++;
+                ScheduledFuture<?> timeout = null;
+                final AtomicBoolean hung = new AtomicBoolean();
+                ReplicationResult result;
+                try {
+                    if (process == null) {
+                        process = startWorker();
+                        toWorker = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+                        fromWorker = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+                    }
+                    if (unitTimeoutMillis > 0) {
+                        final Process running = process;
+                        // killing a hung JVM makes the read below fail
+                        timeout = watchdog.schedule(new Runnable() {
+                            public void run() {
+                                hung.set(true);
+                                running.destroyForcibly();
+                            }
+                        }, unitTimeoutMillis, TimeUnit.MILLISECONDS);
+                    }
+                    unit.config.writeTo(toWorker);
+                    toWorker.flush();
+                    result = ReplicationResult.readFrom(fromWorker);
+                } catch (IOException e) {
+                    // the JVM died or hung: start over with a fresh one
+                    if (timeout != null) {
+                        timeout.cancel(false);
+                    }
+                    System.err.println("Worker " + (hung.get() ? "timed out" : "failed") + " on "
+                            + unit.config + ": " + e);
+                    if (process != null) {
+                        process.destroyForcibly();
+                        process = null;
+                    }
+                    if (unit.attempts > maxRetries) {
+                        failedUnits.add(unit.config);
+                        done.countDown();
+                    } else {
+                        pending.add(unit);
+                    }
+                    continue;
+                }
+                if (timeout != null) {
+                    timeout.cancel(false);
+                }
+                if (hung.get()) {
+                    // the answer came just as the JVM was being killed
+                    process = null;
+                }
+
+                results.put(unit.config, result);
+                done.countDown();
+                if (cache != null) {
+                    try {
+                        cache.put(result);
+                    } catch (IOException e) {
+                        // the result is still returned, only its caching is lost
+                        cacheErrors.incrementAndGet();
+                        System.err.println("Cannot cache " + unit.config + ": " + e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (process != null) {
+                try {
+                    // closing its input lets the worker exit on its own
+                    toWorker.close();
+                    process.waitFor();
+                } catch (IOException e) {
+                    process.destroy();
+                } catch (InterruptedException e) {
+                    process.destroy();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a child JVM running the ReplicationWorker with the class path
+     * of this JVM.
+     *
+     * @return the child process
+     * @throws IOException if the JVM cannot be started
+     */
+    private Process startWorker() throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ReplicationWorker.class.getName());
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return builder.start();
+    }
+
+    /**
+     * Runs a campaign of replications of the default configuration with
+     * consecutive seeds and prints the mean wait over all of them.
+     *
+     * @param args the number of workers and the number of replications
+     *             (default: available processors and 100)
+     * @throws Exception if the campaign cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+
+        int workers = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        int replications = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        McBurgerConfig base = McBurgerConfig.current();
+        List<McBurgerConfig> configs = new ArrayList<McBurgerConfig>();
+        for (int i = 0; i < replications; i++) {
+            configs.add(base.withSeed(base.getSeed() + i));
+        }
+
+        ReplicationCache cache = new ReplicationCache(new File("replication-cache"), 10000);
+        WorkerFarm farm = new WorkerFarm(workers, 2, cache);
+        List<ReplicationResult> results = farm.run(configs);
+        cache.close();
+
+        double sum = 0;
+        for (ReplicationResult result : results) {
+            sum += result.getMeanWait();
+        }
+        System.out.println(results.size() + " replications, mean wait "
+                + (sum / results.size()) + " minutes, "
+                + farm.getFailedUnits().size() + " failed, "
+                + farm.getCacheErrors() + " not cached");
+    }
+}